@@ -1,9 +1,21 @@
+import models.Earthquake;
 import models.EarthquakeAnalyzer;
+import models.EarthquakeStatistics;
+import models.EarthquakeStore;
+import models.EventColumns;
 import parser.CSVReader;
+import parser.CSVTailer;
+import storage.MappedEventStore;
+import storage.SnapshotWriter;
+import database.CSVIngestor;
 import database.DatabaseManager;
 import database.SQLQueries;
 import visualization.TextChartGenerator;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class Main {
@@ -11,50 +23,116 @@ public class Main {
         System.out.println("=== Проект анализа данных о землетрясениях ===\n");
         System.out.println("=".repeat(50));
 
+        // --tail: после отчета следить за дописыванием CSV и добавлять новые строки
+        boolean tail = Arrays.asList(args).contains("--tail");
+
         try {
-            // 1. Отладка CSV файла
             CSVReader csvReader = new CSVReader();
-            csvReader.debugCSV("Землетрясения.csv");
-
-            // 2. Чтение данных из CSV файла
-            System.out.println("\n2. Чтение данных из CSV файла...");
-            List<models.Earthquake> earthquakes = csvReader.readCSV("Землетрясения.csv");
+            Path source = Paths.get("Землетрясения.csv");
+            Path snapshot = Paths.get("Землетрясения.snapshot");
+            // Позиция в CSV, до которой данные загружены в анализатор: с нее продолжает
+            // режим слежения. Берется из самой загрузки, а не из размера файла, чтобы
+            // строки, дописанные во время загрузки, не были пропущены
+            long loadedOffset = 0;
+
+            // 1-2. Снимок разобранных данных отображается в память и анализируется
+            // без загрузки в кучу. CSV разбирается заново только при первом запуске
+            // или если файл изменился с момента записи снимка. В режиме слежения
+            // в анализатор добавляются события, поэтому колонки копируются в кучу
+            EventColumns store = null;
+            MappedEventStore mapped = MappedEventStore.open(snapshot, source);
+            if (mapped != null) {
+                System.out.println("\n1-2. Данные загружены из снимка " + snapshot + " (CSV не разбирался)");
+                loadedOffset = mapped.sourceOffset();
+                if (tail) {
+                    EarthquakeStore copy = new EarthquakeStore();
+                    for (int i = 0; i < mapped.size(); i++) {
+                        copy.add(mapped.get(i));
+                    }
+                    store = copy;
+                } else {
+                    store = mapped;
+                }
+            } else {
+                // 1. Отладка CSV файла
+                csvReader.debugCSV("Землетрясения.csv");
+
+                if (tail) {
+                    // 2. Чтение завершенных строк CSV сразу в хранилище и в снимок;
+                    // незавершенную последнюю строку дочитает режим слежения
+                    System.out.println("\n2. Чтение данных из CSV файла...");
+                    EarthquakeStore parsed = new EarthquakeStore();
+                    SnapshotWriter writer = createSnapshotWriter(snapshot);
+                    Consumer<Earthquake> sink = parsed::add;
+                    if (writer != null) {
+                        sink = sink.andThen(writer);
+                    }
+                    try (writer) {
+                        // Ошибка чтения CSV пробрасывается: иначе уже разобранные строки
+                        // остались бы в хранилище с позицией 0 и слежение добавило бы их повторно
+                        loadedOffset = csvReader.readCSVFrom("Землетрясения.csv", 0, sink, true);
+                        if (writer != null) {
+                            commitSnapshot(writer, source, loadedOffset, snapshot);
+                        }
+                    }
+                    store = parsed;
+                } else {
+                    // 2. Чтение завершенных строк CSV прямо в колонки снимка на диске:
+                    // каталог не проходит через кучу и может быть больше нее.
+                    // Незавершенная последняя строка считается еще дописываемой
+                    System.out.println("\n2. Чтение данных из CSV файла в снимок...");
+                    SnapshotWriter writer = createSnapshotWriter(snapshot);
+                    if (writer != null) {
+                        try (writer) {
+                            // Ошибка чтения CSV пробрасывается, неполный снимок не сохраняется
+                            long end = csvReader.readCSVFrom("Землетрясения.csv", 0, writer, true);
+                            if (commitSnapshot(writer, source, end, snapshot)) {
+                                mapped = MappedEventStore.open(snapshot);
+                            }
+                        }
+                    }
+                    if (mapped != null) {
+                        loadedOffset = mapped.sourceOffset();
+                        store = mapped;
+                    } else {
+                        // Снимок недоступен - данные разбираются в кучу, как без снимков
+                        System.out.println("Чтение данных в память без снимка...");
+                        EarthquakeStore parsed = new EarthquakeStore();
+                        loadedOffset = csvReader.readCSVFrom("Землетрясения.csv", 0, parsed::add, true);
+                        store = parsed;
+                    }
+                }
+            }
 
-            if (earthquakes.isEmpty()) {
+            if (store == null || store.isEmpty()) {
                 System.out.println("ОШИБКА: Не удалось прочитать данные из CSV файла");
                 return;
             }
 
+            // 3. Создание анализатора над колонками событий
+            System.out.println("\n" + "=".repeat(50));
+            System.out.println("3. Создание анализатора...");
+            EarthquakeAnalyzer analyzer = new EarthquakeAnalyzer(store);
+            int total = store.size();
+
+            // Общая статистика за один проход по колонкам
+            EarthquakeStatistics statistics = analyzer.summarize();
+
             // Анализ данных о времени
-            int withTime = 0;
-            int withoutTime = 0;
-            for (models.Earthquake eq : earthquakes) {
-                if (eq.getTime() != null) {
-                    withTime++;
-                } else {
-                    withoutTime++;
-                }
-            }
+            long withTime = statistics.getWithTime();
+            long withoutTime = statistics.getTotal() - withTime;
 
             System.out.println("\nСтатистика времени:");
             System.out.println("  С временем: " + withTime + " (" +
-                    String.format("%.1f%%", earthquakes.size() > 0 ? (withTime * 100.0 / earthquakes.size()) : 0) + ")");
+                    String.format("%.1f%%", total > 0 ? (withTime * 100.0 / total) : 0) + ")");
             System.out.println("  Без времени: " + withoutTime + " (" +
-                    String.format("%.1f%%", earthquakes.size() > 0 ? (withoutTime * 100.0 / earthquakes.size()) : 0) + ")");
-
-            // 3. Создание анализатора
-            System.out.println("\n" + "=".repeat(50));
-            System.out.println("3. Создание анализатора...");
-            EarthquakeAnalyzer analyzer = new EarthquakeAnalyzer();
-            for (models.Earthquake eq : earthquakes) {
-                analyzer.addEarthquake(eq);
-            }
+                    String.format("%.1f%%", total > 0 ? (withoutTime * 100.0 / total) : 0) + ")");
 
             // 4. Вывод общей статистики
             System.out.println("\n" + "=".repeat(50));
             System.out.println("4. Общая статистика:");
 
-            Map<String, Object> stats = analyzer.getStatistics();
+            Map<String, Object> stats = statistics.toMap();
             TextChartGenerator.printStatisticsTable(stats, "Общая статистика данных");
 
             // 5. Текстовая визуализация данных
@@ -174,9 +252,10 @@ public class Main {
             System.out.println("\n" + "=".repeat(50));
             System.out.println("6. Работа с базой данных:");
 
+            // Таблицы не пересоздаются: загружаются только новые или измененные строки
             DatabaseManager dbManager = new DatabaseManager("earthquakes.db");
-            dbManager.createTables();
-            dbManager.saveEarthquakes(earthquakes);
+            CSVIngestor ingestor = new CSVIngestor(dbManager, csvReader);
+            ingestor.ingest("Землетрясения.csv");
 
             // 7. Выполнение SQL запросов
             System.out.println("\n" + "=".repeat(50));
@@ -209,6 +288,9 @@ public class Main {
                 }
             }
 
+            // 7.7 Распределения из агрегатов базы данных
+            queries.printRollupDistributions();
+
             // 8. Дополнительный анализ из анализатора
             System.out.println("\n" + "=".repeat(50));
             System.out.println("8. Дополнительный анализ:");
@@ -258,10 +340,10 @@ public class Main {
             System.out.println("\n" + "=".repeat(50));
             System.out.println("9. Итоговая статистика:");
 
-            System.out.println("Всего обработано записей: " + earthquakes.size());
-            System.out.println("Успешно считано из CSV: " + earthquakes.size());
+            System.out.println("Всего обработано записей: " + total);
+            System.out.println("Успешно считано из CSV: " + total);
             System.out.println("Записей с временем: " + withTime +
-                    String.format(" (%.1f%%)", earthquakes.size() > 0 ? (withTime * 100.0 / earthquakes.size()) : 0));
+                    String.format(" (%.1f%%)", total > 0 ? (withTime * 100.0 / total) : 0));
 
             // Полная статистика по штатам
             Map<String, Long> fullStateStats = analyzer.getStateStatistics();
@@ -280,6 +362,28 @@ public class Main {
                 }
             }
 
+            // 10. Режим слежения за файлом
+            if (tail) {
+                System.out.println("\n" + "=".repeat(50));
+                System.out.println("10. Слежение за " + source + " (Ctrl+C для выхода)...");
+
+                // Каждая порция новых строк обрабатывается за O(новых строк): анализатор
+                // в инкрементальном режиме обновляет готовые счетчики при добавлении,
+                // агрегаты в базе обновляются триггерами по новым строкам
+                analyzer.setIncremental(true);
+                CSVTailer tailer = new CSVTailer(csvReader, "Землетрясения.csv", loadedOffset);
+                tailer.watch((rows, from, to) -> {
+                    rows.forEach(analyzer::addEarthquake);
+                    ingestor.append("Землетрясения.csv", from, to, rows);
+
+                    EarthquakeStatistics current = analyzer.summarize();
+                    System.out.println("\nНовых событий: " + rows.size() + ", всего: " + current.getTotal()
+                            + ", с временем: " + current.getWithTime());
+                    System.out.println("По магнитудам: " + analyzer.getMagnitudeDistribution());
+                    queries.printRollupDistributions();
+                }, CSVTailer.DEFAULT_POLL_MILLIS);
+            }
+
             // Закрываем соединение с базой данных
             dbManager.close();
 
@@ -314,4 +418,27 @@ public class Main {
             }
         }
     }
-}
\ No newline at end of file
+
+    // Запись снимка во временные файлы рядом с ним; null, если это невозможно
+    // (например, каталог только для чтения) - тогда анализ идет без снимка
+    private static SnapshotWriter createSnapshotWriter(Path snapshot) {
+        try {
+            return new SnapshotWriter(snapshot);
+        } catch (IOException e) {
+            System.err.println("Не удалось создать снимок данных: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Возвращает true, если снимок сохранен
+    private static boolean commitSnapshot(SnapshotWriter writer, Path source, long sourceSize, Path snapshot) {
+        try {
+            writer.commit(source, sourceSize);
+            System.out.println("Снимок данных сохранен: " + snapshot);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Не удалось сохранить снимок данных: " + e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Пул соединений SQLite по модели "один писатель, много читателей".
+// Писатель один и захватывается под блокировкой, поэтому записи идут строго
+// по очереди. Читатели открываются только для чтения и выдаются из очереди,
+// так что аналитические запросы из разных потоков выполняются параллельно.
+// База переводится в режим WAL, в котором читатели не блокируют писателя
+// и видят последние зафиксированные данные
+public class ConnectionPool implements AutoCloseable {
+    // Флаг SQLITE_OPEN_READONLY драйвера sqlite-jdbc
+    private static final String READ_ONLY_OPEN_MODE = "1";
+    // Сколько ждать освобождения блокировки базы, мс
+    private static final String BUSY_TIMEOUT_MS = "5000";
+    // Подготовленных запросов в кэше одного соединения
+    private static final int STATEMENT_CACHE_SIZE = 64;
+
+    // Работа с соединением, которая может выбросить SQLException
+    public interface SQLFunction<T> {
+        T apply(Connection connection) throws SQLException;
+    }
+
+    public interface SQLAction {
+        void run(Connection connection) throws SQLException;
+    }
+
+    private final Connection writer;
+    private final ReentrantLock writerLock = new ReentrantLock();
+    private final List<Connection> readerConnections = new ArrayList<>();
+    private final BlockingQueue<Connection> readers;
+    // Кэши подготовленных запросов по соединениям; заполняется в конструкторе
+    private final Map<Connection, StatementCache> statementCaches = new IdentityHashMap<>();
+
+    public ConnectionPool(String dbName, int readerCount) throws SQLException {
+        String url = "jdbc:sqlite:" + dbName;
+
+        Properties writerProperties = new Properties();
+        writerProperties.setProperty("busy_timeout", BUSY_TIMEOUT_MS);
+        writer = DriverManager.getConnection(url, writerProperties);
+        statementCaches.put(writer, new StatementCache(writer, STATEMENT_CACHE_SIZE));
+
+        try {
+            try (Statement stmt = writer.createStatement()) {
+                stmt.execute("PRAGMA journal_mode = WAL");
+            }
+
+            int count = Math.max(1, readerCount);
+            readers = new ArrayBlockingQueue<>(count);
+            Properties readerProperties = new Properties();
+            readerProperties.setProperty("open_mode", READ_ONLY_OPEN_MODE);
+            readerProperties.setProperty("busy_timeout", BUSY_TIMEOUT_MS);
+            for (int i = 0; i < count; i++) {
+                Connection reader = DriverManager.getConnection(url, readerProperties);
+                readerConnections.add(reader);
+                statementCaches.put(reader, new StatementCache(reader, STATEMENT_CACHE_SIZE));
+                readers.add(reader);
+            }
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
+    }
+
+    // Выполняет работу на свободном соединении для чтения; если все заняты - ждет
+    public <T> T withReader(SQLFunction<T> work) throws SQLException {
+        Connection reader = acquireReader();
+        try {
+            return work.apply(reader);
+        } finally {
+            releaseReader(reader);
+        }
+    }
+
+    // Соединение для чтения на произвольное время (например, пока читается поток строк).
+    // Его обязательно нужно вернуть через releaseReader
+    Connection acquireReader() throws SQLException {
+        try {
+            return readers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Ожидание соединения для чтения прервано", e);
+        }
+    }
+
+    void releaseReader(Connection reader) {
+        readers.add(reader);
+    }
+
+    // Выполняет работу на соединении писателя под блокировкой. Блокировка
+    // повторно входимая, поэтому вложенные вызовы из того же потока допустимы
+    public <T> T withWriter(SQLFunction<T> work) throws SQLException {
+        writerLock.lock();
+        try {
+            return work.apply(writer);
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    public void useWriter(SQLAction work) throws SQLException {
+        withWriter(connection -> {
+            work.run(connection);
+            return null;
+        });
+    }
+
+    // Кэш подготовленных запросов соединения, полученного из withReader/withWriter
+    StatementCache statements(Connection connection) {
+        return statementCaches.get(connection);
+    }
+
+    // Соединение писателя без блокировки - для кода, который сам отвечает за очередность
+    Connection writerConnection() {
+        return writer;
+    }
+
+    public int getReaderCount() {
+        return readerConnections.size();
+    }
+
+    @Override
+    public void close() {
+        for (StatementCache cache : statementCaches.values()) {
+            cache.close();
+        }
+        for (Connection reader : readerConnections) {
+            closeQuietly(reader);
+        }
+        readerConnections.clear();
+        writerLock.lock();
+        try {
+            closeQuietly(writer);
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    private void closeQuietly(Connection connection) {
+        try {
+            if (connection != null && !connection.isClosed()) {
+                connection.close();
+            }
+        } catch (SQLException e) {
+            System.err.println("Ошибка при закрытии соединения: " + e.getMessage());
+        }
+    }
+}
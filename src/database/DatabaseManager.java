@@ -2,15 +2,116 @@ package database;
 
 import models.Earthquake;
 import java.sql.*;
-import java.util.List;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class DatabaseManager {
-    private Connection connection;
+    static final String REGION_INSERT_SQL = "INSERT OR IGNORE INTO regions (name) VALUES (?)";
+    // Upsert по earthquake_id: новые строки вставляются, существующие обновляются
+    // только если что-то изменилось, неизмененные не переписываются.
+    // source_id - источник из ingest_sources, последним загрузивший строку
+    static final String EARTHQUAKE_INSERT_SQL = "INSERT INTO earthquakes " +
+            "(earthquake_id, region_id, magnitude, depth, magnitude_type, time, state, year, month, source_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT(earthquake_id) DO UPDATE SET " +
+            "region_id = excluded.region_id, magnitude = excluded.magnitude, depth = excluded.depth, " +
+            "magnitude_type = excluded.magnitude_type, time = excluded.time, state = excluded.state, " +
+            "year = excluded.year, month = excluded.month, source_id = excluded.source_id " +
+            "WHERE earthquakes.region_id IS NOT excluded.region_id " +
+            "OR earthquakes.magnitude IS NOT excluded.magnitude " +
+            "OR earthquakes.depth IS NOT excluded.depth " +
+            "OR earthquakes.magnitude_type IS NOT excluded.magnitude_type " +
+            "OR earthquakes.time IS NOT excluded.time " +
+            "OR earthquakes.state IS NOT excluded.state " +
+            "OR earthquakes.source_id IS NOT excluded.source_id";
+    static final String REGION_SELECT_SQL = "SELECT region_id FROM regions WHERE name = ?";
+    // Строки, сохраненные не через CSVIngestor, источника не имеют
+    static final long NO_SOURCE = 0;
+    private static final String REGION_SELECT_ALL_SQL = "SELECT region_id, name FROM regions";
+
+    // Вторичные индексы таблицы землетрясений. При массовой загрузке они удаляются
+    // и строятся заново один раз после вставки
+    private static final String[][] INDEXES = {
+            {"idx_time", "CREATE INDEX IF NOT EXISTS idx_time ON earthquakes(time)"},
+            {"idx_magnitude", "CREATE INDEX IF NOT EXISTS idx_magnitude ON earthquakes(magnitude)"},
+            {"idx_depth", "CREATE INDEX IF NOT EXISTS idx_depth ON earthquakes(depth)"},
+            {"idx_region", "CREATE INDEX IF NOT EXISTS idx_region ON earthquakes(region_id)"},
+            // Удаление строк замененного источника
+            {"idx_source", "CREATE INDEX IF NOT EXISTS idx_source ON earthquakes(source_id)"},
+            // Покрывающий индекс для отчетов по годам и месяцам: количество и магнитуды
+            // считаются по индексу без чтения таблицы
+            {"idx_year_month", "CREATE INDEX IF NOT EXISTS idx_year_month ON earthquakes(year, month, magnitude)"}
+    };
+    // Агрегаты по (год, месяц, регион, корзина магнитуды, корзина глубины).
+    // Границы корзин те же, что в EarthquakeAnalyzer.magnitudeBucket/depthBucket;
+    // события без времени попадают в год 0 и месяц 0, без глубины - в корзину -1
+    private static final String ROLLUP_SELECT_SQL = "SELECT " + rollupKey("") + ", " +
+            "COUNT(*), SUM(magnitude), MAX(magnitude), TOTAL(depth) " +
+            "FROM earthquakes ";
+    private static final String ROLLUP_INSERT_SQL = "INSERT INTO earthquake_rollup " +
+            "(year, month, region_id, mag_bucket, depth_bucket, count, magnitude_sum, magnitude_max, depth_sum) ";
+    private static final String ROLLUP_REBUILD_SQL = ROLLUP_INSERT_SQL + ROLLUP_SELECT_SQL + " GROUP BY 1, 2, 3, 4, 5";
+    // Ячейка агрегатов, в которую попадает строка row (NEW или OLD в триггере)
+    private static final String ROLLUP_CELL = "(year, month, region_id, mag_bucket, depth_bucket)";
+
+    // Агрегаты поддерживаются триггерами на earthquakes приращениями: вставка
+    // прибавляет строку к своей ячейке, удаление вычитает, обновление (в том числе
+    // upsert, перенесший событие в другой месяц) вычитает старую строку из старой
+    // ячейки и прибавляет новую. Максимум магнитуды вычитанием не восстановить,
+    // поэтому он пересчитывается только для ячейки, из которой ушел ее максимум.
+    // При массовой загрузке триггеры удаляются, агрегаты строятся одним проходом
+    private static final String[][] ROLLUP_TRIGGERS = {
+            {"trg_rollup_insert", "CREATE TRIGGER IF NOT EXISTS trg_rollup_insert AFTER INSERT ON earthquakes BEGIN " +
+                    rollupAdd("NEW") + " END"},
+            {"trg_rollup_update", "CREATE TRIGGER IF NOT EXISTS trg_rollup_update " +
+                    "AFTER UPDATE OF region_id, magnitude, depth, year, month ON earthquakes BEGIN " +
+                    rollupSubtract("OLD") + rollupAdd("NEW") + " END"},
+            {"trg_rollup_delete", "CREATE TRIGGER IF NOT EXISTS trg_rollup_delete AFTER DELETE ON earthquakes BEGIN " +
+                    rollupSubtract("OLD") + " END"}
+    };
+
+    private static final String INGEST_SOURCE_SELECT_SQL =
+            "SELECT source_id, file_offset, checksum, rows FROM ingest_sources WHERE source = ?";
+    private static final String INGEST_SOURCE_INSERT_SQL =
+            "INSERT OR IGNORE INTO ingest_sources (source, file_offset, checksum, rows) VALUES (?, 0, 0, 0)";
+    private static final String INGEST_SOURCE_UPSERT_SQL = "INSERT INTO ingest_sources " +
+            "(source, file_offset, checksum, rows) VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT(source) DO UPDATE SET file_offset = excluded.file_offset, " +
+            "checksum = excluded.checksum, rows = excluded.rows, " +
+            "updated_at = CURRENT_TIMESTAMP";
+    private static final String SOURCE_ROWS_DELETE_SQL = "DELETE FROM earthquakes WHERE source_id = ?";
+    // Настройки соединения, которые меняет режим массовой загрузки
+    private static final String[] BULK_LOAD_PRAGMAS = {"journal_mode", "synchronous", "cache_size", "temp_store"};
+    // Размер кэша страниц при массовой загрузке: отрицательное значение задается в КиБ (256 МБ)
+    private static final int BULK_LOAD_CACHE_SIZE = -256 * 1024;
+
+    // Соединения для чтения по умолчанию, не больше числа процессоров
+    private static final int DEFAULT_READERS = 4;
+
+    private final ConnectionPool pool;
+    // Соединение писателя; используется только под блокировкой писателя пула,
+    // которую берут все публичные методы записи
+    private final Connection connection;
+    // Значения настроек до начала массовой загрузки, null если режим не включен
+    private Map<String, String> savedPragmas;
+    // Кэш идентификаторов регионов: исходное значение штата -> region_id.
+    // Заполняется один раз на каждый новый штат, поэтому вставка землетрясений
+    // обходится без запроса к regions на каждую строку. Сбрасывается при пересоздании таблиц
+    private final Map<String, Integer> regionIds = new HashMap<>();
 
     public DatabaseManager(String dbName) throws Exception {
+        this(dbName, Math.min(DEFAULT_READERS, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public DatabaseManager(String dbName, int readers) throws Exception {
         try {
             Class.forName("org.sqlite.JDBC");
-            connection = DriverManager.getConnection("jdbc:sqlite:" + dbName);
+            pool = new ConnectionPool(dbName, readers);
+            connection = pool.writerConnection();
             System.out.println("Подключение к базе данных установлено: " + dbName);
         } catch (ClassNotFoundException e) {
             System.err.println("SQLite JDBC драйвер не найден!");
@@ -21,156 +122,659 @@ public class DatabaseManager {
         }
     }
 
+    // Полное пересоздание схемы: все данные и отметки инкрементальной загрузки удаляются
     public void createTables() {
-        try (Statement stmt = connection.createStatement()) {
-            System.out.println("Создание таблиц в базе данных...");
-
-            stmt.execute("DROP TABLE IF EXISTS earthquakes");
-            stmt.execute("DROP TABLE IF EXISTS regions");
-
-            // Создаем таблицу регионов
-            stmt.execute("CREATE TABLE IF NOT EXISTS regions (" +
-                    "region_id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "name TEXT UNIQUE NOT NULL," +
-                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
-
-            // Создаем таблицу землетрясений
-            stmt.execute("CREATE TABLE IF NOT EXISTS earthquakes (" +
-                    "earthquake_id TEXT PRIMARY KEY," +
-                    "region_id INTEGER," +
-                    "magnitude REAL NOT NULL," +
-                    "depth REAL DEFAULT 0.0," +
-                    "magnitude_type TEXT," +
-                    "time TIMESTAMP," +
-                    "state TEXT," +
-                    "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-                    "FOREIGN KEY (region_id) REFERENCES regions(region_id))");
-
-            // Создаем индексы для ускорения запросов
-            stmt.execute("CREATE INDEX IF NOT EXISTS idx_time ON earthquakes(time)");
-            stmt.execute("CREATE INDEX IF NOT EXISTS idx_magnitude ON earthquakes(magnitude)");
-            stmt.execute("CREATE INDEX IF NOT EXISTS idx_depth ON earthquakes(depth)");
-            stmt.execute("CREATE INDEX IF NOT EXISTS idx_region ON earthquakes(region_id)");
-
-            System.out.println("Таблицы успешно созданы");
+        try {
+            pool.useWriter(locked -> {
+                try (Statement stmt = connection.createStatement()) {
+                    System.out.println("Создание таблиц в базе данных...");
 
+                    stmt.execute("DROP TABLE IF EXISTS earthquakes");
+                    stmt.execute("DROP TABLE IF EXISTS regions");
+                    stmt.execute("DROP TABLE IF EXISTS ingest_sources");
+                    stmt.execute("DROP TABLE IF EXISTS earthquake_rollup");
+                    regionIds.clear();
+
+                    createSchema(stmt);
+                    System.out.println("Таблицы успешно созданы");
+                }
+            });
         } catch (SQLException e) {
             System.err.println("Ошибка создания таблиц: " + e.getMessage());
         }
     }
 
-    public void saveEarthquakes(List<Earthquake> earthquakes) {
-        if (earthquakes == null || earthquakes.isEmpty()) {
-            System.out.println("Нет данных для сохранения");
+    // Создает недостающие таблицы и индексы, существующие данные сохраняются
+    public void ensureTables() throws SQLException {
+        pool.useWriter(locked -> {
+            try (Statement stmt = connection.createStatement()) {
+                createSchema(stmt);
+            }
+        });
+    }
+
+    private void createSchema(Statement stmt) throws SQLException {
+        // Создаем таблицу регионов
+        stmt.execute("CREATE TABLE IF NOT EXISTS regions (" +
+                "region_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "name TEXT UNIQUE NOT NULL," +
+                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+
+        // Создаем таблицу землетрясений
+        stmt.execute("CREATE TABLE IF NOT EXISTS earthquakes (" +
+                "earthquake_id TEXT PRIMARY KEY," +
+                "region_id INTEGER," +
+                "magnitude REAL NOT NULL," +
+                "depth REAL DEFAULT 0.0," +
+                "magnitude_type TEXT," +
+                "time INTEGER," +
+                "state TEXT," +
+                "year INTEGER," +
+                "month INTEGER," +
+                "source_id INTEGER," +
+                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+                "FOREIGN KEY (region_id) REFERENCES regions(region_id))");
+
+        migrateEarthquakes(stmt);
+
+        // Агрегаты для отчетов и распределений; поддерживаются триггерами при каждой записи
+        boolean hasRollup;
+        try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM sqlite_master WHERE " +
+                "(type = 'table' AND name = 'earthquake_rollup') OR (type = 'trigger' AND name LIKE 'trg_rollup_%')")) {
+            hasRollup = rs.next() && rs.getInt(1) == 1 + ROLLUP_TRIGGERS.length;
+        }
+        stmt.execute("CREATE TABLE IF NOT EXISTS earthquake_rollup (" +
+                "year INTEGER NOT NULL," +
+                "month INTEGER NOT NULL," +
+                "region_id INTEGER NOT NULL," +
+                "mag_bucket INTEGER NOT NULL," +
+                "depth_bucket INTEGER NOT NULL," +
+                "count INTEGER NOT NULL," +
+                "magnitude_sum REAL NOT NULL," +
+                "magnitude_max REAL," +
+                "depth_sum REAL," +
+                "PRIMARY KEY (year, month, region_id, mag_bucket, depth_bucket)) WITHOUT ROWID");
+        if (!hasRollup && savedPragmas == null) {
+            // Таблица агрегатов или ее триггеры появились в уже заполненной базе -
+            // агрегаты строятся заново, дальше их поддерживают триггеры
+            rebuildRollups(stmt);
+            createRollupTriggers(stmt);
+        }
+
+        // Отметки инкрементальной загрузки: до какой позиции прочитан каждый источник.
+        // Отметки без source_id сбрасываются: источники загрузятся заново с начала,
+        // upsert по earthquake_id не создаст дубликатов и проставит строкам источник
+        Set<String> sourceColumns = columnsOf(stmt, "ingest_sources");
+        if (!sourceColumns.isEmpty() && !sourceColumns.contains("source_id")) {
+            System.out.println("Обновление схемы: отметки загрузки источников сбрасываются...");
+            stmt.execute("DROP TABLE ingest_sources");
+        }
+        stmt.execute("CREATE TABLE IF NOT EXISTS ingest_sources (" +
+                "source_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "source TEXT UNIQUE NOT NULL," +
+                "file_offset INTEGER NOT NULL," +
+                "checksum INTEGER NOT NULL," +
+                "rows INTEGER NOT NULL DEFAULT 0," +
+                "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+
+        // Создаем индексы для ускорения запросов
+        createIndexes(stmt);
+    }
+
+    // Время события хранится как миллисекунды эпохи (INTEGER), локальное время
+    // переводится в них по часовому поясу системы - так же, как его показывает
+    // SQLQueries. Для отчетов по годам и месяцам рядом хранятся год и месяц
+    // по местному календарю, как их считает EarthquakeAnalyzer. Прежние отчеты
+    // брали strftime(time / 1000, 'unixepoch') без 'localtime', то есть год и месяц
+    // по UTC: вне пояса UTC события у границы месяца попадают теперь в другой месяц
+    static long toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    // Таблицы, созданные до появления колонок year, month и source_id: добавляем
+    // колонки и заполняем год и месяц по уже сохраненному времени. Источник старых
+    // строк неизвестен - он проставится, когда строку снова загрузит CSVIngestor
+    private void migrateEarthquakes(Statement stmt) throws SQLException {
+        Set<String> columns = columnsOf(stmt, "earthquakes");
+        if (!columns.contains("source_id")) {
+            System.out.println("Обновление схемы: добавление колонки source_id...");
+            stmt.execute("ALTER TABLE earthquakes ADD COLUMN source_id INTEGER");
+        }
+        if (columns.contains("year")) {
             return;
         }
 
-        try {
-            System.out.println("Сохранение " + earthquakes.size() + " землетрясений в базу данных...");
-            connection.setAutoCommit(false);
+        System.out.println("Обновление схемы: добавление колонок year и month...");
+        stmt.execute("ALTER TABLE earthquakes ADD COLUMN year INTEGER");
+        stmt.execute("ALTER TABLE earthquakes ADD COLUMN month INTEGER");
+        int updated = stmt.executeUpdate("UPDATE earthquakes SET " +
+                "year = CAST(strftime('%Y', time / 1000, 'unixepoch', 'localtime') AS INTEGER), " +
+                "month = CAST(strftime('%m', time / 1000, 'unixepoch', 'localtime') AS INTEGER) " +
+                "WHERE time IS NOT NULL");
+        System.out.println("Заполнено записей: " + updated);
+    }
 
-            int regionCount = 0;
-            int earthquakeCount = 0;
-            int timeCount = 0;
-
-            // Вставляем регионы
-            String regionSql = "INSERT OR IGNORE INTO regions (name) VALUES (?)";
-            try (PreparedStatement pstmt = connection.prepareStatement(regionSql)) {
-                for (Earthquake eq : earthquakes) {
-                    if (eq.getState() != null && !eq.getState().isEmpty()) {
-                        pstmt.setString(1, eq.getState());
-                        pstmt.addBatch();
-                        regionCount++;
+    // Имена колонок таблицы в нижнем регистре; пустое множество, если таблицы нет
+    private static Set<String> columnsOf(Statement stmt, String table) throws SQLException {
+        Set<String> columns = new HashSet<>();
+        try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                columns.add(rs.getString("name").toLowerCase(Locale.ROOT));
+            }
+        }
+        return columns;
+    }
+
+    // Отметка загрузки источника или null, если источник еще не загружался
+    // Читается через писателя: отметка всегда читается перед ее обновлением
+    public IngestSource getIngestSource(String source) throws SQLException {
+        return pool.withWriter(locked -> {
+            try (PreparedStatement pstmt = connection.prepareStatement(INGEST_SOURCE_SELECT_SQL)) {
+                pstmt.setString(1, source);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (!rs.next()) {
+                        return null;
                     }
-                }
-                if (regionCount > 0) {
-                    pstmt.executeBatch();
-                    System.out.println("Добавлено регионов: " + regionCount);
+                    return new IngestSource(rs.getLong("source_id"), source, rs.getLong("file_offset"),
+                            rs.getLong("checksum"), rs.getLong("rows"));
                 }
             }
+        });
+    }
 
-            // Вставляем землетрясения
-            String eqSql = "INSERT OR REPLACE INTO earthquakes " +
-                    "(earthquake_id, region_id, magnitude, depth, magnitude_type, time, state) " +
-                    "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    // Регистрирует новый источник с пустой отметкой (ничего не загружено)
+    // и возвращает ее; строки источника помечаются ее идентификатором
+    public IngestSource addIngestSource(String source) throws SQLException {
+        pool.useWriter(locked -> {
+            try (PreparedStatement pstmt = connection.prepareStatement(INGEST_SOURCE_INSERT_SQL)) {
+                pstmt.setString(1, source);
+                pstmt.executeUpdate();
+            }
+        });
+        return getIngestSource(source);
+    }
 
-            try (PreparedStatement pstmt = connection.prepareStatement(eqSql)) {
-                for (Earthquake eq : earthquakes) {
-                    int regionId = getRegionId(eq.getState());
+    public void saveIngestSource(IngestSource ingestSource) throws SQLException {
+        pool.useWriter(locked -> {
+            try (PreparedStatement pstmt = connection.prepareStatement(INGEST_SOURCE_UPSERT_SQL)) {
+                pstmt.setString(1, ingestSource.getSource());
+                pstmt.setLong(2, ingestSource.getOffset());
+                pstmt.setLong(3, ingestSource.getChecksum());
+                pstmt.setLong(4, ingestSource.getRows());
+                pstmt.executeUpdate();
+            }
+        });
+    }
 
-                    pstmt.setString(1, eq.getId());
-                    pstmt.setInt(2, regionId);
-                    pstmt.setDouble(3, eq.getMagnitude());
-                    pstmt.setDouble(4, eq.getDepth());
-                    pstmt.setString(5, eq.getMagnitudeType());
+    // Удаляет строки, загруженные из источника, например перед загрузкой замененного
+    // файла; агрегаты уменьшаются триггерами. Возвращает количество удаленных строк
+    public long deleteSourceRows(long sourceId) throws SQLException {
+        return pool.withWriter(locked -> {
+            try (PreparedStatement pstmt = connection.prepareStatement(SOURCE_ROWS_DELETE_SQL)) {
+                pstmt.setLong(1, sourceId);
+                return (long) pstmt.executeUpdate();
+            }
+        });
+    }
 
-                    if (eq.getTime() != null) {
-                        pstmt.setTimestamp(6, Timestamp.valueOf(eq.getTime()));
-                        timeCount++;
-                    } else {
-                        pstmt.setNull(6, Types.TIMESTAMP);
-                    }
+    public boolean hasEarthquakes() throws SQLException {
+        return pool.withWriter(locked -> {
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT EXISTS (SELECT 1 FROM earthquakes)")) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        });
+    }
+
+    // Массовая загрузка: быстрые настройки SQLite (WAL, synchronous=OFF, большой кэш,
+    // временные данные в памяти), удаление вторичных индексов и триггеров агрегатов,
+    // чтобы вставка не обслуживала их на каждую строку. Завершается вызовом endBulkLoad()
+    public void beginBulkLoad() throws SQLException {
+        pool.useWriter(locked -> applyBulkLoadSettings());
+    }
+
+    private void applyBulkLoadSettings() throws SQLException {
+        if (savedPragmas != null) {
+            return;
+        }
 
-                    pstmt.setString(7, eq.getState());
-                    pstmt.addBatch();
-                    earthquakeCount++;
+        try (Statement stmt = connection.createStatement()) {
+            Map<String, String> saved = new LinkedHashMap<>();
+            for (String pragma : BULK_LOAD_PRAGMAS) {
+                try (ResultSet rs = stmt.executeQuery("PRAGMA " + pragma)) {
+                    if (rs.next()) {
+                        saved.put(pragma, rs.getString(1));
+                    }
                 }
+            }
+
+            stmt.execute("PRAGMA journal_mode = WAL");
+            stmt.execute("PRAGMA synchronous = OFF");
+            stmt.execute("PRAGMA cache_size = " + BULK_LOAD_CACHE_SIZE);
+            stmt.execute("PRAGMA temp_store = MEMORY");
 
-                pstmt.executeBatch();
+            for (String[] index : INDEXES) {
+                stmt.execute("DROP INDEX IF EXISTS " + index[0]);
             }
+            for (String[] trigger : ROLLUP_TRIGGERS) {
+                stmt.execute("DROP TRIGGER IF EXISTS " + trigger[0]);
+            }
+            savedPragmas = saved;
+            System.out.println("Режим массовой загрузки включен");
+        }
+    }
+
+    // Строит индексы заново одним проходом, обновляет статистику планировщика
+    // и возвращает прежние настройки соединения
+    public void endBulkLoad() throws SQLException {
+        pool.useWriter(locked -> restoreBulkLoadSettings());
+    }
+
+    private void restoreBulkLoadSettings() throws SQLException {
+        if (savedPragmas == null) {
+            return;
+        }
+
+        try (Statement stmt = connection.createStatement()) {
+            System.out.println("Построение индексов...");
+            createIndexes(stmt);
+            // Во время массовой загрузки агрегаты не обновлялись - пересчитываем целиком
+            // и возвращаем триггеры
+            rebuildRollups(stmt);
+            createRollupTriggers(stmt);
+            stmt.execute("ANALYZE");
 
+            for (Map.Entry<String, String> pragma : savedPragmas.entrySet()) {
+                stmt.execute("PRAGMA " + pragma.getKey() + " = " + pragma.getValue());
+            }
+        } finally {
+            savedPragmas = null;
+        }
+        System.out.println("Режим массовой загрузки завершен");
+    }
+
+    // Полный пересчет агрегатов по таблице землетрясений
+    public void rebuildRollups() throws SQLException {
+        pool.useWriter(locked -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (Statement stmt = connection.createStatement()) {
+                rebuildRollups(stmt);
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        });
+    }
+
+    private void rebuildRollups(Statement stmt) throws SQLException {
+        System.out.println("Пересчет агрегатов...");
+        stmt.executeUpdate("DELETE FROM earthquake_rollup");
+        stmt.executeUpdate(ROLLUP_REBUILD_SQL);
+    }
+
+    // Ключ ячейки агрегатов по колонкам строки: row - "NEW.", "OLD." или "" для таблицы
+    private static String rollupKey(String row) {
+        return "IFNULL(" + row + "year, 0), IFNULL(" + row + "month, 0), IFNULL(" + row + "region_id, 0), " +
+                "CASE WHEN " + row + "magnitude < 2.0 THEN 0 WHEN " + row + "magnitude < 3.0 THEN 1 " +
+                "WHEN " + row + "magnitude < 4.0 THEN 2 WHEN " + row + "magnitude < 5.0 THEN 3 " +
+                "WHEN " + row + "magnitude < 6.0 THEN 4 ELSE 5 END, " +
+                "CASE WHEN " + row + "depth IS NULL OR " + row + "depth <= 0 THEN -1 " +
+                "WHEN " + row + "depth < 5000 THEN 0 WHEN " + row + "depth < 10000 THEN 1 " +
+                "WHEN " + row + "depth < 20000 THEN 2 WHEN " + row + "depth < 50000 THEN 3 ELSE 4 END";
+    }
+
+    // Прибавляет строку row к ее ячейке (upsert приращением)
+    private static String rollupAdd(String row) {
+        return ROLLUP_INSERT_SQL + "VALUES (" + rollupKey(row + ".") + ", 1, " +
+                row + ".magnitude, " + row + ".magnitude, IFNULL(" + row + ".depth, 0)) " +
+                "ON CONFLICT" + ROLLUP_CELL + " DO UPDATE SET count = count + 1, " +
+                "magnitude_sum = magnitude_sum + excluded.magnitude_sum, " +
+                "magnitude_max = MAX(IFNULL(magnitude_max, excluded.magnitude_max), excluded.magnitude_max), " +
+                "depth_sum = IFNULL(depth_sum, 0) + excluded.depth_sum;";
+    }
+
+    // Вычитает строку row из ее ячейки; опустевшая ячейка удаляется
+    private static String rollupSubtract(String row) {
+        String cell = " WHERE " + ROLLUP_CELL + " = (" + rollupKey(row + ".") + ");";
+        return "UPDATE earthquake_rollup SET count = count - 1, " +
+                "magnitude_sum = magnitude_sum - " + row + ".magnitude, " +
+                "depth_sum = IFNULL(depth_sum, 0) - IFNULL(" + row + ".depth, 0)" + cell +
+                // Максимум ячейки ушел вместе со строкой - берем его из оставшихся строк
+                "UPDATE earthquake_rollup SET magnitude_max = (SELECT MAX(magnitude) FROM earthquakes " +
+                "WHERE year IS " + row + ".year AND month IS " + row + ".month " +
+                "AND (" + rollupKey("") + ") = (" + rollupKey(row + ".") + "))" +
+                cell.substring(0, cell.length() - 1) + " AND magnitude_max <= " + row + ".magnitude;" +
+                "DELETE FROM earthquake_rollup" + cell.substring(0, cell.length() - 1) + " AND count <= 0;";
+    }
+
+    private void createRollupTriggers(Statement stmt) throws SQLException {
+        for (String[] trigger : ROLLUP_TRIGGERS) {
+            stmt.execute(trigger[1]);
+        }
+    }
+
+    private void createIndexes(Statement stmt) throws SQLException {
+        for (String[] index : INDEXES) {
+            stmt.execute(index[1]);
+        }
+    }
+
+    public void saveEarthquakes(List<Earthquake> earthquakes) {
+        if (earthquakes == null || earthquakes.isEmpty()) {
+            System.out.println("Нет данных для сохранения");
+            return;
+        }
+
+        EarthquakeBatchWriter writer = new EarthquakeBatchWriter(this);
+        try {
+            System.out.println("Сохранение " + earthquakes.size() + " землетрясений в базу данных...");
+            writeEarthquakes(earthquakes, writer);
+
+            System.out.println("Сохранение завершено:");
+            System.out.println("  Землетрясений: " + writer.getWritten());
+            System.out.println("  С временем: " + writer.getWithTime());
+            System.out.println("  Без времени: " + (writer.getWritten() - writer.getWithTime()));
+
+        } catch (SQLException e) {
+            System.err.println("Ошибка сохранения данных: " + e.getMessage());
+            System.err.println("Зафиксировано землетрясений: " + writer.getCommittedPosition());
+        }
+    }
+
+    // Сохранение списка с выбросом ошибки: сначала новые регионы, затем землетрясения
+    void writeEarthquakes(List<Earthquake> earthquakes, EarthquakeBatchWriter writer) throws SQLException {
+        pool.useWriter(locked -> writeEarthquakesLocked(earthquakes, writer));
+    }
+
+    private void writeEarthquakesLocked(List<Earthquake> earthquakes, EarthquakeBatchWriter writer)
+            throws SQLException {
+        // Вставляем регионы, которых еще нет в кэше, каждый по одному разу
+        Set<String> newRegions = new LinkedHashSet<>();
+        for (Earthquake eq : earthquakes) {
+            String state = eq.getState();
+            if (state != null && !state.isEmpty() && !regionIds.containsKey(state)) {
+                newRegions.add(state);
+            }
+        }
+        if (!newRegions.isEmpty()) {
+            saveRegions(newRegions);
+            System.out.println("Добавлено регионов: " + newRegions.size());
+        }
+
+        // Вставляем землетрясения: пакетами с периодической фиксацией
+        writer.write(earthquakes.iterator());
+    }
+
+    // Вставка новых регионов одной транзакцией с загрузкой их идентификаторов в кэш
+    private void saveRegions(Collection<String> states) throws SQLException {
+        connection.setAutoCommit(false);
+        try (PreparedStatement pstmt = connection.prepareStatement(REGION_INSERT_SQL)) {
+            for (String state : states) {
+                pstmt.setString(1, state);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
             connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
             connection.setAutoCommit(true);
+        }
+        loadRegionIds(states);
+    }
+
+    // Потоковое сохранение за один проход: строки пишутся пакетами по мере поступления,
+    // поэтому поток можно взять прямо из CSVReader.streamCSV без промежуточного списка.
+    // Фиксация идет окнами (см. EarthquakeBatchWriter), так что при ошибке теряется
+    // только последнее окно. Закрытие потока остается на вызывающей стороне
+    public void saveEarthquakes(Stream<Earthquake> earthquakes) {
+        saveEarthquakes(earthquakes, new EarthquakeBatchWriter(this));
+    }
+
+    public void saveEarthquakes(Stream<Earthquake> earthquakes, EarthquakeBatchWriter writer) {
+        try {
+            System.out.println("Потоковое сохранение землетрясений в базу данных...");
+            writer.write(earthquakes);
 
             System.out.println("Сохранение завершено:");
-            System.out.println("  Землетрясений: " + earthquakeCount);
-            System.out.println("  С временем: " + timeCount);
-            System.out.println("  Без времени: " + (earthquakeCount - timeCount));
+            System.out.println("  Землетрясений: " + writer.getWritten());
+            System.out.println("  С временем: " + writer.getWithTime());
+            System.out.println("  Без времени: " + (writer.getWritten() - writer.getWithTime()));
 
         } catch (SQLException e) {
             System.err.println("Ошибка сохранения данных: " + e.getMessage());
-            try {
-                connection.rollback();
-                connection.setAutoCommit(true);
-            } catch (SQLException ex) {
-                System.err.println("Ошибка отката транзакции: " + ex.getMessage());
+            System.err.println("Зафиксировано строк источника: " + writer.getCommittedPosition() +
+                    " (с этой позиции можно продолжить загрузку)");
+        }
+    }
+
+    // Заполняет параметры вставки землетрясения, возвращает true если у записи есть время.
+    // sourceId - источник из ingest_sources или NO_SOURCE
+    boolean bindEarthquake(PreparedStatement pstmt, Earthquake eq, int regionId, long sourceId)
+            throws SQLException {
+        pstmt.setString(1, eq.getId());
+        pstmt.setInt(2, regionId);
+        pstmt.setDouble(3, eq.getMagnitude());
+        pstmt.setDouble(4, eq.getDepth());
+        pstmt.setString(5, eq.getMagnitudeType());
+
+        pstmt.setString(7, eq.getState());
+
+        boolean hasTime = eq.getTime() != null;
+        if (hasTime) {
+            pstmt.setLong(6, toEpochMillis(eq.getTime()));
+            pstmt.setInt(8, eq.getTime().getYear());
+            pstmt.setInt(9, eq.getTime().getMonthValue());
+        } else {
+            pstmt.setNull(6, Types.INTEGER);
+            pstmt.setNull(8, Types.INTEGER);
+            pstmt.setNull(9, Types.INTEGER);
+        }
+        if (sourceId != NO_SOURCE) {
+            pstmt.setLong(10, sourceId);
+        } else {
+            pstmt.setNull(10, Types.INTEGER);
+        }
+        return hasTime;
+    }
+
+    // Загружает идентификаторы всех регионов одним запросом и кэширует их
+    // для переданных исходных значений штатов
+    private void loadRegionIds(Collection<String> states) throws SQLException {
+        Map<String, Integer> byName = new HashMap<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(REGION_SELECT_ALL_SQL)) {
+            while (rs.next()) {
+                byName.put(rs.getString("name"), rs.getInt("region_id"));
             }
         }
+
+        for (String state : states) {
+            regionIds.put(state, byName.getOrDefault(state.trim(), 0));
+        }
     }
 
-    private int getRegionId(String regionName) throws SQLException {
-        if (regionName == null || regionName.trim().isEmpty()) {
+    // Идентификатор региона для потокового сохранения: новый штат вставляется
+    // и запрашивается один раз, дальше берется из кэша
+    int resolveRegionId(PreparedStatement regionStmt, PreparedStatement selectStmt,
+                                String state) throws SQLException {
+        if (state == null || state.isEmpty()) {
             return 0;
         }
 
-        String sql = "SELECT region_id FROM regions WHERE name = ?";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setString(1, regionName.trim());
+        Integer cached = regionIds.get(state);
+        if (cached != null) {
+            return cached;
+        }
+
+        regionStmt.setString(1, state);
+        regionStmt.executeUpdate();
+
+        int regionId = 0;
+        String name = state.trim();
+        if (!name.isEmpty()) {
+            selectStmt.setString(1, name);
+            try (ResultSet rs = selectStmt.executeQuery()) {
+                if (rs.next()) {
+                    regionId = rs.getInt("region_id");
+                }
+            }
+        }
+        regionIds.put(state, regionId);
+        return regionId;
+    }
+
+    void clearRegionCache() {
+        regionIds.clear();
+    }
+
+    // Обработчик результата запроса; ResultSet закрывается после его вызова
+    public interface ResultSetHandler<T> {
+        T handle(ResultSet rs) throws SQLException;
+    }
+
+    // Преобразование текущей строки результата в объект
+    public interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    // Параметризованный запрос на соединении для чтения. Подготовленный запрос
+    // берется из кэша соединения, поэтому SQL не разбирается заново при каждом вызове;
+    // текст запроса должен быть постоянным, а значения передаваться через '?'.
+    // ResultSet закрывается сам, соединение возвращается в пул.
+    // Можно вызывать из нескольких потоков
+    public <T> T query(String sql, ResultSetHandler<T> handler, Object... params) throws SQLException {
+        return pool.withReader(reader -> {
+            PreparedStatement pstmt = pool.statements(reader).prepare(sql);
+            try {
+                bindParameters(pstmt, params);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return handler.handle(rs);
+                }
+            } finally {
+                pstmt.clearParameters();
+            }
+        });
+    }
+
+    // Все строки результата, преобразованные mapper
+    public <T> List<T> queryList(String sql, RowMapper<T> mapper, Object... params) throws SQLException {
+        return query(sql, rs -> {
+            List<T> rows = new ArrayList<>();
+            while (rs.next()) {
+                rows.add(mapper.map(rs));
+            }
+            return rows;
+        }, params);
+    }
+
+    // Ленивый поток строк результата: соединение для чтения занято, пока поток не
+    // закрыт или не дочитан до конца, поэтому поток нужно закрывать (try-with-resources).
+    // fetchSize - сколько строк драйвер читает за раз
+    public <T> Stream<T> stream(String sql, RowMapper<T> mapper, int fetchSize, Object... params)
+            throws SQLException {
+        RowIterator<T> rows = iterate(sql, mapper, fetchSize, params);
+        return StreamSupport.stream(
+                        Spliterators.spliteratorUnknownSize(rows, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(rows::close);
+    }
+
+    public <T> RowIterator<T> iterate(String sql, RowMapper<T> mapper, int fetchSize, Object... params)
+            throws SQLException {
+        Connection reader = pool.acquireReader();
+        PreparedStatement pstmt = null;
+        try {
+            pstmt = pool.statements(reader).prepare(sql);
+            bindParameters(pstmt, params);
+            pstmt.setFetchSize(fetchSize);
             ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt("region_id");
+
+            PreparedStatement statement = pstmt;
+            return new RowIterator<>(rs, mapper, () -> {
+                releaseStatement(statement);
+                pool.releaseReader(reader);
+            });
+        } catch (SQLException e) {
+            releaseStatement(pstmt);
+            pool.releaseReader(reader);
+            throw e;
+        }
+    }
+
+    private static void releaseStatement(PreparedStatement pstmt) {
+        if (pstmt == null) {
+            return;
+        }
+        try {
+            pstmt.clearParameters();
+        } catch (SQLException e) {
+            System.err.println("Ошибка при сбросе параметров запроса: " + e.getMessage());
+        }
+    }
+
+    // Строка с колонками earthquake_id, depth, magnitude_type, magnitude, state, time
+    // в объект Earthquake; время хранится в миллисекундах эпохи
+    public static Earthquake mapEarthquake(ResultSet rs) throws SQLException {
+        long time = rs.getLong("time");
+        LocalDateTime localTime = rs.wasNull() ? null : toLocalDateTime(time);
+        return new Earthquake(rs.getString("earthquake_id"), rs.getDouble("depth"), rs.getString("magnitude_type"),
+                rs.getDouble("magnitude"), rs.getString("state"), localTime);
+    }
+
+    private static void bindParameters(PreparedStatement pstmt, Object[] params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            Object param = params[i];
+            int index = i + 1;
+            if (param == null) {
+                pstmt.setNull(index, Types.NULL);
+            } else if (param instanceof Integer) {
+                pstmt.setInt(index, (Integer) param);
+            } else if (param instanceof Long) {
+                pstmt.setLong(index, (Long) param);
+            } else if (param instanceof Double) {
+                pstmt.setDouble(index, (Double) param);
+            } else if (param instanceof String) {
+                pstmt.setString(index, (String) param);
+            } else {
+                pstmt.setObject(index, param);
             }
         }
-        return 0;
     }
 
+    // Старый способ для однопоточного кода: ResultSet живет дольше вызова,
+    // поэтому выполняется на соединении писателя. Statement закрывается вместе
+    // с ResultSet, который вызывающая сторона обязана закрыть. Новый код - query()
     public ResultSet executeQuery(String sql) throws SQLException {
         Statement stmt = connection.createStatement();
-        return stmt.executeQuery(sql);
+        try {
+            stmt.closeOnCompletion();
+            return stmt.executeQuery(sql);
+        } catch (SQLException e) {
+            stmt.close();
+            throw e;
+        }
     }
 
+    // Соединение писателя без блокировки - только для однопоточного кода
     public Connection getConnection() {
         return connection;
     }
 
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
     public void close() {
-        try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-                System.out.println("Соединение с базой данных закрыто");
-            }
-        } catch (SQLException e) {
-            System.err.println("Ошибка при закрытии соединения: " + e.getMessage());
-        }
+        pool.close();
+        System.out.println("Соединение с базой данных закрыто");
     }
 }
\ No newline at end of file
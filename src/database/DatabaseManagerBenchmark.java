@@ -0,0 +1,65 @@
+package database;
+
+import models.Earthquake;
+import testutils.Benchmark;
+import testutils.SyntheticData;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+// Бенчмарк сохранения в SQLite: saveEarthquakes со списком и с потоком.
+// Каждая итерация пишет в заново созданные таблицы временной базы.
+// Запуск: java -cp out:lib/sqlite-jdbc-3.36.0.3.jar database.DatabaseManagerBenchmark [1k|1m|10m]
+public class DatabaseManagerBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int rows = Benchmark.parseScale(args);
+        List<Earthquake> earthquakes = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            earthquakes.add(SyntheticData.earthquake(i));
+        }
+
+        Path dbFile = Files.createTempFile("benchmark-earthquakes", ".db");
+        PrintStream out = System.out;
+        PrintStream quiet = new PrintStream(OutputStream.nullOutputStream());
+        DatabaseManager dbManager = new DatabaseManager(dbFile.toString());
+        try {
+            Benchmark.printHeader("DatabaseManager, строк: " + rows);
+
+            Benchmark.run("saveEarthquakes(List) (строк)", rows, operations -> {
+                System.setOut(quiet);
+                dbManager.createTables();
+                dbManager.saveEarthquakes(earthquakes);
+                System.setOut(out);
+            });
+
+            Benchmark.run("saveEarthquakes(List) + bulk load (строк)", rows, operations -> {
+                System.setOut(quiet);
+                dbManager.createTables();
+                dbManager.beginBulkLoad();
+                try {
+                    dbManager.saveEarthquakes(earthquakes);
+                } finally {
+                    dbManager.endBulkLoad();
+                }
+                System.setOut(out);
+            });
+
+            Benchmark.run("saveEarthquakes(Stream) (строк)", rows, operations -> {
+                System.setOut(quiet);
+                dbManager.createTables();
+                dbManager.saveEarthquakes(IntStream.range(0, rows).mapToObj(SyntheticData::earthquake));
+                System.setOut(out);
+            });
+        } finally {
+            System.setOut(out);
+            dbManager.close();
+            Files.deleteIfExists(dbFile);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package database;
+
+import models.Earthquake;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+
+// Пакетная запись землетрясений с ограниченным расходом памяти: пакет JDBC
+// отправляется каждые batchSize строк, транзакция фиксируется каждые
+// batchesPerCommit пакетов. При ошибке откатывается только текущее окно,
+// все зафиксированное ранее остается в базе. Позиция последней фиксации
+// (число прочитанных из источника строк) передается в слушатель прогресса и
+// может быть передана в setStartRow(), чтобы продолжить загрузку с того же места
+public class EarthquakeBatchWriter {
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    public static final int DEFAULT_BATCHES_PER_COMMIT = 10;
+
+    private final DatabaseManager dbManager;
+    private final int batchSize;
+    private final int batchesPerCommit;
+    private LongConsumer progressListener;
+    private long startRow;
+    private long sourceId = DatabaseManager.NO_SOURCE;
+
+    private long position;
+    private long committedPosition;
+    private long written;
+    private long withTime;
+
+    public EarthquakeBatchWriter(DatabaseManager dbManager) {
+        this(dbManager, DEFAULT_BATCH_SIZE, DEFAULT_BATCHES_PER_COMMIT);
+    }
+
+    public EarthquakeBatchWriter(DatabaseManager dbManager, int batchSize, int batchesPerCommit) {
+        if (batchSize <= 0 || batchesPerCommit <= 0) {
+            throw new IllegalArgumentException("Размер пакета и интервал фиксации должны быть положительными");
+        }
+        this.dbManager = dbManager;
+        this.batchSize = batchSize;
+        this.batchesPerCommit = batchesPerCommit;
+    }
+
+    // Вызывается после каждой фиксации с позицией, до которой все записано
+    public void setProgressListener(LongConsumer progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    // Сколько строк источника пропустить перед записью (продолжение прерванной загрузки)
+    public void setStartRow(long startRow) {
+        this.startRow = startRow;
+    }
+
+    // Источник из ingest_sources, которым помечаются записанные строки
+    public void setSourceId(long sourceId) {
+        this.sourceId = sourceId;
+    }
+
+    // Записывает поток, закрытие потока остается на вызывающей стороне
+    public long write(Stream<Earthquake> earthquakes) throws SQLException {
+        return write(earthquakes.iterator());
+    }
+
+    // Возвращает позицию последней фиксации. При ошибке выбрасывает SQLException,
+    // а позицию, с которой можно продолжить, возвращает getCommittedPosition()
+    public long write(Iterator<Earthquake> earthquakes) throws SQLException {
+        return dbManager.getPool().withWriter(connection -> write(connection, earthquakes));
+    }
+
+    private long write(Connection connection, Iterator<Earthquake> earthquakes) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+
+        position = 0;
+        written = 0;
+        withTime = 0;
+        while (position < startRow && earthquakes.hasNext()) {
+            earthquakes.next();
+            position++;
+        }
+        committedPosition = position;
+
+        connection.setAutoCommit(false);
+        try (PreparedStatement regionStmt = connection.prepareStatement(DatabaseManager.REGION_INSERT_SQL);
+             PreparedStatement selectStmt = connection.prepareStatement(DatabaseManager.REGION_SELECT_SQL);
+             PreparedStatement eqStmt = connection.prepareStatement(DatabaseManager.EARTHQUAKE_INSERT_SQL)) {
+            int rowsInBatch = 0;
+            int batchesInWindow = 0;
+
+            while (earthquakes.hasNext()) {
+                Earthquake eq = earthquakes.next();
+                int regionId = dbManager.resolveRegionId(regionStmt, selectStmt, eq.getState());
+
+                if (dbManager.bindEarthquake(eqStmt, eq, regionId, sourceId)) {
+                    withTime++;
+                }
+                eqStmt.addBatch();
+                position++;
+                written++;
+
+                if (++rowsInBatch == batchSize) {
+                    eqStmt.executeBatch();
+                    rowsInBatch = 0;
+                    if (++batchesInWindow == batchesPerCommit) {
+                        commit(connection);
+                        batchesInWindow = 0;
+                    }
+                }
+            }
+
+            if (rowsInBatch > 0) {
+                eqStmt.executeBatch();
+            }
+            commit(connection);
+            return committedPosition;
+
+        } catch (SQLException e) {
+            // Откатываем только незафиксированное окно
+            dbManager.clearRegionCache();
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    // Агрегаты обновляются триггерами в той же транзакции, что и строки
+    private void commit(Connection connection) throws SQLException {
+        connection.commit();
+        committedPosition = position;
+        if (progressListener != null) {
+            progressListener.accept(committedPosition);
+        }
+    }
+
+    public long getCommittedPosition() {
+        return committedPosition;
+    }
+
+    // Количество записанных строк в последнем вызове write(), включая незафиксированные
+    public long getWritten() {
+        return written;
+    }
+
+    public long getWithTime() {
+        return withTime;
+    }
+}
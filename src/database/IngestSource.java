@@ -0,0 +1,37 @@
+package database;
+
+// Отметка инкрементальной загрузки источника: до какой байтовой позиции файл
+// уже загружен, контрольная сумма данных перед этой позицией (чтобы заметить
+// замену файла) и общее число загруженных строк. sourceId помечает строки
+// источника в earthquakes, чтобы при замене файла удалить прежние строки
+public class IngestSource {
+    private final long sourceId;
+    private final String source;
+    private final long offset;
+    private final long checksum;
+    private final long rows;
+
+    public IngestSource(long sourceId, String source, long offset, long checksum, long rows) {
+        this.sourceId = sourceId;
+        this.source = source;
+        this.offset = offset;
+        this.checksum = checksum;
+        this.rows = rows;
+    }
+
+    public long getSourceId() { return sourceId; }
+
+    public String getSource() { return source; }
+
+    public long getOffset() { return offset; }
+
+    public long getChecksum() { return checksum; }
+
+    public long getRows() { return rows; }
+
+    @Override
+    public String toString() {
+        return String.format("IngestSource{id=%d, source='%s', offset=%d, rows=%d}",
+                sourceId, source, offset, rows);
+    }
+}
@@ -0,0 +1,75 @@
+package database;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// Ленивый обход результата запроса: строка читается из ResultSet и
+// преобразуется только при запросе следующего элемента, весь результат в памяти
+// не собирается. Закрывается явно или автоматически, когда строки закончились.
+// Ошибки SQL при чтении оборачиваются в IllegalStateException
+public class RowIterator<T> implements Iterator<T>, AutoCloseable {
+    private final ResultSet rs;
+    private final DatabaseManager.RowMapper<T> mapper;
+    private final Runnable onClose;
+    private boolean hasRow;
+    private boolean fetched;
+    private boolean closed;
+
+    RowIterator(ResultSet rs, DatabaseManager.RowMapper<T> mapper, Runnable onClose) {
+        this.rs = rs;
+        this.mapper = mapper;
+        this.onClose = onClose;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (!fetched) {
+            try {
+                hasRow = rs.next();
+            } catch (SQLException e) {
+                close();
+                throw new IllegalStateException("Ошибка чтения результата запроса: " + e.getMessage(), e);
+            }
+            fetched = true;
+            if (!hasRow) {
+                close();
+            }
+        }
+        return hasRow;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        fetched = false;
+        try {
+            return mapper.map(rs);
+        } catch (SQLException e) {
+            close();
+            throw new IllegalStateException("Ошибка чтения строки результата: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        hasRow = false;
+        try {
+            rs.close();
+        } catch (SQLException e) {
+            System.err.println("Ошибка при закрытии результата запроса: " + e.getMessage());
+        } finally {
+            onClose.run();
+        }
+    }
+}
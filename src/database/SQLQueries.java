@@ -1,12 +1,109 @@
 package database;
 
+import models.Earthquake;
+import models.EarthquakeAnalyzer;
 import java.sql.*;
-import java.time.Instant;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 public class SQLQueries {
+    // Тексты запросов постоянны, значения передаются параметрами - подготовленные
+    // запросы переиспользуются из кэша соединения
+    private static final String STRONG_EARTHQUAKES_SQL = "SELECT earthquake_id, magnitude, depth, time " +
+            "FROM earthquakes " +
+            "WHERE magnitude > ? " +
+            "ORDER BY magnitude DESC " +
+            "LIMIT ?";
+    private static final String DEEPEST_EARTHQUAKES_SQL = "SELECT earthquake_id, depth, magnitude, time " +
+            "FROM earthquakes " +
+            "WHERE depth > 0 " +
+            "ORDER BY depth DESC " +
+            "LIMIT ?";
+    private static final String TIME_COUNT_SQL = "SELECT COUNT(*) as cnt FROM earthquakes WHERE time IS NOT NULL";
+    // Отчеты по годам и месяцам читают только покрывающий индекс idx_year_month
+    // (year, month, magnitude) вместо разбора времени каждой строки. Год и месяц -
+    // по местному времени (см. DatabaseManager.toEpochMillis), а не по UTC
+    private static final String BY_YEAR_SQL = "SELECT " +
+            "year, " +
+            "COUNT(*) as count, " +
+            "AVG(magnitude) as avg_magnitude, " +
+            "MAX(magnitude) as max_magnitude, " +
+            "MIN(magnitude) as min_magnitude " +
+            "FROM earthquakes " +
+            "WHERE year IS NOT NULL " +
+            "GROUP BY year " +
+            "ORDER BY year DESC";
+    private static final String SUMMARY_SQL = "SELECT " +
+            "COUNT(*) as total_count, " +
+            "SUM(CASE WHEN time IS NOT NULL AND time != 0 THEN 1 ELSE 0 END) as with_time_count, " +
+            "AVG(magnitude) as avg_magnitude, " +
+            "MAX(magnitude) as max_magnitude, " +
+            "MIN(magnitude) as min_magnitude, " +
+            "AVG(depth) as avg_depth, " +
+            "MAX(depth) as max_depth " +
+            "FROM earthquakes";
+    private static final String TOP_EARTHQUAKES_SQL = "SELECT earthquake_id, magnitude, depth, time " +
+            "FROM earthquakes " +
+            "WHERE magnitude > 0 " +
+            "ORDER BY magnitude DESC " +
+            "LIMIT ?";
+    private static final String BY_MONTH_SQL = "SELECT " +
+            "month, " +
+            "COUNT(*) as count, " +
+            "AVG(magnitude) as avg_magnitude " +
+            "FROM earthquakes " +
+            "WHERE year = ? " +
+            "GROUP BY month " +
+            "ORDER BY month";
+    // Диапазонный запрос по индексу idx_time: границы - миллисекунды эпохи
+    private static final String TIME_RANGE_SQL = "SELECT earthquake_id, magnitude, depth, time " +
+            "FROM earthquakes " +
+            "WHERE time BETWEEN ? AND ? " +
+            "ORDER BY time " +
+            "LIMIT ?";
+
+    // Распределения по таблице агрегатов earthquake_rollup: размер таблицы зависит
+    // от числа лет, регионов и корзин, а не от числа событий
+    private static final String ROLLUP_MAGNITUDE_SQL = "SELECT mag_bucket, SUM(count) as count " +
+            "FROM earthquake_rollup GROUP BY mag_bucket ORDER BY mag_bucket";
+    private static final String ROLLUP_DEPTH_SQL = "SELECT depth_bucket, SUM(count) as count " +
+            "FROM earthquake_rollup WHERE depth_bucket >= 0 GROUP BY depth_bucket ORDER BY depth_bucket";
+    private static final String ROLLUP_YEAR_SQL = "SELECT year, SUM(count) as count " +
+            "FROM earthquake_rollup WHERE year > 0 GROUP BY year ORDER BY year";
+    private static final String ROLLUP_MONTH_SQL = "SELECT month, SUM(count) as count, " +
+            "SUM(magnitude_sum) / SUM(count) as avg_magnitude " +
+            "FROM earthquake_rollup WHERE year = ? GROUP BY month ORDER BY month";
+    private static final String ROLLUP_REGION_SQL = "SELECT r.name as name, SUM(a.count) as count, " +
+            "SUM(a.magnitude_sum) / SUM(a.count) as avg_magnitude, MAX(a.magnitude_max) as max_magnitude " +
+            "FROM earthquake_rollup a JOIN regions r ON r.region_id = a.region_id " +
+            "GROUP BY a.region_id ORDER BY count DESC LIMIT ?";
+
+    // Все колонки, нужные для DatabaseManager.mapEarthquake
+    private static final String EARTHQUAKE_COLUMNS = "earthquake_id, depth, magnitude_type, magnitude, state, time";
+    private static final String ALL_EARTHQUAKES_SQL = "SELECT " + EARTHQUAKE_COLUMNS + " FROM earthquakes";
+    private static final String FIND_STRONG_SQL = "SELECT " + EARTHQUAKE_COLUMNS + " FROM earthquakes " +
+            "WHERE magnitude > ? ORDER BY magnitude DESC LIMIT ?";
+    private static final String FIND_DEEPEST_SQL = "SELECT " + EARTHQUAKE_COLUMNS + " FROM earthquakes " +
+            "WHERE depth > 0 ORDER BY depth DESC LIMIT ?";
+    private static final String FIND_BETWEEN_SQL = "SELECT " + EARTHQUAKE_COLUMNS + " FROM earthquakes " +
+            "WHERE time BETWEEN ? AND ? ORDER BY time";
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final Pattern NUMBER = Pattern.compile("-?\\d+(\\.\\d+)?");
+    // Виды колонок при печати результата
+    private static final int OTHER_COLUMN = 0;
+    private static final int TIME_COLUMN = 1;
+    private static final int MAGNITUDE_COLUMN = 2;
+    private static final int DEPTH_COLUMN = 3;
+
     private DatabaseManager dbManager;
 
     public SQLQueries(DatabaseManager dbManager) {
@@ -16,26 +113,15 @@ public class SQLQueries {
     // 1. Землетрясения с магнитудой больше 4.0
     public void getStrongEarthquakes() {
         System.out.println("\n=== Таблица 1: Сильные землетрясения (магнитуда > 4.0) ===");
-        String sql = "SELECT earthquake_id, magnitude, depth, time " +
-                "FROM earthquakes " +
-                "WHERE magnitude > 4.0 " +
-                "ORDER BY magnitude DESC " +
-                "LIMIT 10";
-
-        executeAndPrintQueryWithTime(sql, new String[]{"ID", "Магнитуда", "Глубина", "Время"});
+        executeAndPrintQueryWithTime(STRONG_EARTHQUAKES_SQL,
+                new String[]{"ID", "Магнитуда", "Глубина", "Время"}, 4.0, 10);
     }
 
     // 2. Самые глубокие землетрясения
     public void getDeepestEarthquakes(int limit) {
         System.out.println("\n=== Таблица 2: Самые глубокие землетрясения ===");
-        String sql = String.format(
-                "SELECT earthquake_id, depth, magnitude, time " +
-                        "FROM earthquakes " +
-                        "WHERE depth > 0 " +
-                        "ORDER BY depth DESC " +
-                        "LIMIT %d", limit);
-
-        executeAndPrintQueryWithTime(sql, new String[]{"ID", "Глубина (м)", "Магнитуда", "Время"});
+        executeAndPrintQueryWithTime(DEEPEST_EARTHQUAKES_SQL,
+                new String[]{"ID", "Глубина (м)", "Магнитуда", "Время"}, limit);
     }
 
     // 3. Землетрясения по годам
@@ -43,13 +129,7 @@ public class SQLQueries {
         System.out.println("\n=== Таблица 3: Землетрясения по годам ===");
         try {
             // Проверяем наличие данных о времени
-            String checkSql = "SELECT COUNT(*) as cnt FROM earthquakes WHERE time IS NOT NULL";
-            ResultSet checkRs = dbManager.executeQuery(checkSql);
-
-            int timeCount = 0;
-            if (checkRs.next()) {
-                timeCount = checkRs.getInt("cnt");
-            }
+            int timeCount = dbManager.query(TIME_COUNT_SQL, rs -> rs.next() ? rs.getInt("cnt") : 0);
 
             if (timeCount == 0) {
                 System.out.println("В данных нет информации о времени землетрясений");
@@ -59,60 +139,49 @@ public class SQLQueries {
             System.out.println("Найдено записей со временем: " + timeCount);
 
             // Запрос для анализа по годам
-            String sql = "SELECT " +
-                    "strftime('%Y', datetime(time/1000, 'unixepoch')) as year, " +
-                    "COUNT(*) as count, " +
-                    "AVG(magnitude) as avg_magnitude, " +
-                    "MAX(magnitude) as max_magnitude, " +
-                    "MIN(magnitude) as min_magnitude " +
-                    "FROM earthquakes " +
-                    "WHERE time IS NOT NULL AND time != 0 " +
-                    "GROUP BY year " +
-                    "HAVING year IS NOT NULL AND year != '' " +
-                    "ORDER BY year DESC";
-
-            ResultSet rs = dbManager.executeQuery(sql);
-
-            // Вывод заголовков
-            System.out.printf("%-10s | %-12s | %-15s | %-15s | %-15s\n",
-                    "Год", "Количество", "Средняя маг.", "Макс. маг.", "Мин. маг.");
-            System.out.println("-".repeat(75));
-
-            // Вывод данных
-            int rowCount = 0;
-            double totalAvgMagnitude = 0;
-            int totalCount = 0;
-
-            while (rs.next()) {
-                String year = rs.getString("year");
-                int count = rs.getInt("count");
-                double avgMag = rs.getDouble("avg_magnitude");
-                double maxMag = rs.getDouble("max_magnitude");
-                double minMag = rs.getDouble("min_magnitude");
-
-                if (!rs.wasNull()) {
-                    System.out.printf("%-10s | %-12d | %-15.2f | %-15.2f | %-15.2f\n",
-                            year != null ? year : "N/A",
-                            count,
-                            avgMag,
-                            maxMag,
-                            minMag);
+            dbManager.query(BY_YEAR_SQL, rs -> {
+                // Вывод заголовков
+                System.out.printf("%-10s | %-12s | %-15s | %-15s | %-15s\n",
+                        "Год", "Количество", "Средняя маг.", "Макс. маг.", "Мин. маг.");
+                System.out.println("-".repeat(75));
 
-                    totalAvgMagnitude += avgMag * count;
-                    totalCount += count;
-                    rowCount++;
+                // Вывод данных
+                int rowCount = 0;
+                double totalAvgMagnitude = 0;
+                int totalCount = 0;
+
+                while (rs.next()) {
+                    String year = rs.getString("year");
+                    int count = rs.getInt("count");
+                    double avgMag = rs.getDouble("avg_magnitude");
+                    double maxMag = rs.getDouble("max_magnitude");
+                    double minMag = rs.getDouble("min_magnitude");
+
+                    if (!rs.wasNull()) {
+                        System.out.printf("%-10s | %-12d | %-15.2f | %-15.2f | %-15.2f\n",
+                                year != null ? year : "N/A",
+                                count,
+                                avgMag,
+                                maxMag,
+                                minMag);
+
+                        totalAvgMagnitude += avgMag * count;
+                        totalCount += count;
+                        rowCount++;
+                    }
                 }
-            }
 
-            if (rowCount == 0) {
-                System.out.println("Данные по годам не найдены");
-            } else {
-                System.out.println("-".repeat(75));
-                System.out.printf("%-10s | %-12d | %-15.2f\n",
-                        "ИТОГО",
-                        totalCount,
-                        totalCount > 0 ? totalAvgMagnitude / totalCount : 0);
-            }
+                if (rowCount == 0) {
+                    System.out.println("Данные по годам не найдены");
+                } else {
+                    System.out.println("-".repeat(75));
+                    System.out.printf("%-10s | %-12d | %-15.2f\n",
+                            "ИТОГО",
+                            totalCount,
+                            totalCount > 0 ? totalAvgMagnitude / totalCount : 0);
+                }
+                return null;
+            });
 
         } catch (SQLException e) {
             System.out.println("Ошибка при получении данных по годам: " + e.getMessage());
@@ -123,36 +192,27 @@ public class SQLQueries {
     public void getAverageMagnitudeByType() {
         System.out.println("\n=== Таблица 4: Общая статистика ===");
         try {
-            String sql = "SELECT " +
-                    "COUNT(*) as total_count, " +
-                    "SUM(CASE WHEN time IS NOT NULL AND time != 0 THEN 1 ELSE 0 END) as with_time_count, " +
-                    "AVG(magnitude) as avg_magnitude, " +
-                    "MAX(magnitude) as max_magnitude, " +
-                    "MIN(magnitude) as min_magnitude, " +
-                    "AVG(depth) as avg_depth, " +
-                    "MAX(depth) as max_depth " +
-                    "FROM earthquakes";
-
-            ResultSet rs = dbManager.executeQuery(sql);
-
-            if (rs.next()) {
-                System.out.printf("%-30s | %-15s\n", "Параметр", "Значение");
-                System.out.println("-".repeat(50));
-
-                int totalCount = rs.getInt("total_count");
-                int withTimeCount = rs.getInt("with_time_count");
-
-                System.out.printf("%-30s | %-15d\n", "Всего землетрясений", totalCount);
-                System.out.printf("%-30s | %-15d\n", "С временем", withTimeCount);
-                System.out.printf("%-30s | %-15.1f%%\n", "Процент с временем",
-                        totalCount > 0 ? (withTimeCount * 100.0 / totalCount) : 0);
-                System.out.println("-".repeat(50));
-                System.out.printf("%-30s | %-15.2f\n", "Средняя магнитуда", rs.getDouble("avg_magnitude"));
-                System.out.printf("%-30s | %-15.2f\n", "Максимальная магнитуда", rs.getDouble("max_magnitude"));
-                System.out.printf("%-30s | %-15.2f\n", "Минимальная магнитуда", rs.getDouble("min_magnitude"));
-                System.out.printf("%-30s | %-15.0f\n", "Средняя глубина (м)", rs.getDouble("avg_depth"));
-                System.out.printf("%-30s | %-15.0f\n", "Максимальная глубина (м)", rs.getDouble("max_depth"));
-            }
+            dbManager.query(SUMMARY_SQL, rs -> {
+                if (rs.next()) {
+                    System.out.printf("%-30s | %-15s\n", "Параметр", "Значение");
+                    System.out.println("-".repeat(50));
+
+                    int totalCount = rs.getInt("total_count");
+                    int withTimeCount = rs.getInt("with_time_count");
+
+                    System.out.printf("%-30s | %-15d\n", "Всего землетрясений", totalCount);
+                    System.out.printf("%-30s | %-15d\n", "С временем", withTimeCount);
+                    System.out.printf("%-30s | %-15.1f%%\n", "Процент с временем",
+                            totalCount > 0 ? (withTimeCount * 100.0 / totalCount) : 0);
+                    System.out.println("-".repeat(50));
+                    System.out.printf("%-30s | %-15.2f\n", "Средняя магнитуда", rs.getDouble("avg_magnitude"));
+                    System.out.printf("%-30s | %-15.2f\n", "Максимальная магнитуда", rs.getDouble("max_magnitude"));
+                    System.out.printf("%-30s | %-15.2f\n", "Минимальная магнитуда", rs.getDouble("min_magnitude"));
+                    System.out.printf("%-30s | %-15.0f\n", "Средняя глубина (м)", rs.getDouble("avg_depth"));
+                    System.out.printf("%-30s | %-15.0f\n", "Максимальная глубина (м)", rs.getDouble("max_depth"));
+                }
+                return null;
+            });
 
         } catch (SQLException e) {
             System.out.println("Не удалось получить статистику: " + e.getMessage());
@@ -163,53 +223,37 @@ public class SQLQueries {
     public void getTopEarthquakes() {
         System.out.println("\n=== Таблица 5: Топ-10 землетрясений по магнитуде ===");
         try {
-            String sql = "SELECT earthquake_id, magnitude, depth, time " +
-                    "FROM earthquakes " +
-                    "WHERE magnitude > 0 " +
-                    "ORDER BY magnitude DESC " +
-                    "LIMIT 10";
-
-            ResultSet rs = dbManager.executeQuery(sql);
-
-            System.out.printf("%-15s | %-10s | %-10s | %-25s\n",
-                    "ID", "Магнитуда", "Глубина", "Время");
-            System.out.println("-".repeat(65));
-
-            int rowCount = 0;
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-
-            while (rs.next()) {
-                String id = rs.getString("earthquake_id");
-                double magnitude = rs.getDouble("magnitude");
-                double depth = rs.getDouble("depth");
-                long timestamp = rs.getLong("time");
-
-                String formattedTime = "Нет данных";
-                if (!rs.wasNull() && timestamp > 0) {
-                    try {
-                        // Преобразуем timestamp в LocalDateTime
-                        Instant instant = Instant.ofEpochMilli(timestamp);
-                        LocalDateTime dateTime = LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
-                        formattedTime = dateTime.format(formatter);
-                    } catch (Exception e) {
-                        formattedTime = "Ошибка формата";
-                    }
-                }
+            dbManager.query(TOP_EARTHQUAKES_SQL, rs -> {
+                System.out.printf("%-15s | %-10s | %-10s | %-25s\n",
+                        "ID", "Магнитуда", "Глубина", "Время");
+                System.out.println("-".repeat(65));
 
-                String displayId = (id != null && id.length() > 15) ? id.substring(0, 12) + "..." : id;
+                int rowCount = 0;
 
-                System.out.printf("%-15s | %-10.2f | %-10.0f | %-25s\n",
-                        displayId != null ? displayId : "N/A",
-                        magnitude,
-                        depth,
-                        formattedTime);
+                while (rs.next()) {
+                    String id = rs.getString("earthquake_id");
+                    double magnitude = rs.getDouble("magnitude");
+                    double depth = rs.getDouble("depth");
+                    long timestamp = rs.getLong("time");
 
-                rowCount++;
-            }
+                    String formattedTime = !rs.wasNull() && timestamp > 0 ? formatTime(timestamp) : "Нет данных";
 
-            if (rowCount == 0) {
-                System.out.println("Нет данных для отображения");
-            }
+                    String displayId = (id != null && id.length() > 15) ? id.substring(0, 12) + "..." : id;
+
+                    System.out.printf("%-15s | %-10.2f | %-10.0f | %-25s\n",
+                            displayId != null ? displayId : "N/A",
+                            magnitude,
+                            depth,
+                            formattedTime);
+
+                    rowCount++;
+                }
+
+                if (rowCount == 0) {
+                    System.out.println("Нет данных для отображения");
+                }
+                return null;
+            }, 10);
 
         } catch (SQLException e) {
             System.out.println("Не удалось получить топ землетрясений: " + e.getMessage());
@@ -220,31 +264,17 @@ public class SQLQueries {
     public void getEarthquakesByMonth(int year) {
         System.out.println("\n=== Таблица 6: Землетрясения по месяцам за " + year + " год ===");
         try {
-            String sql = "SELECT " +
-                    "strftime('%m', datetime(time/1000, 'unixepoch')) as month, " +
-                    "COUNT(*) as count, " +
-                    "AVG(magnitude) as avg_magnitude " +
-                    "FROM earthquakes " +
-                    "WHERE time IS NOT NULL AND time != 0 " +
-                    "AND strftime('%Y', datetime(time/1000, 'unixepoch')) = ? " +
-                    "GROUP BY month " +
-                    "ORDER BY month";
-
-            Connection conn = dbManager.getConnection();
-            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, String.valueOf(year));
-                ResultSet rs = pstmt.executeQuery();
-
+            dbManager.query(BY_MONTH_SQL, rs -> {
                 System.out.printf("%-10s | %-15s | %-15s\n", "Месяц", "Количество", "Ср. магнитуда");
                 System.out.println("-".repeat(45));
 
                 int rowCount = 0;
                 while (rs.next()) {
-                    String month = rs.getString("month");
+                    int month = rs.getInt("month");
                     int count = rs.getInt("count");
                     double avgMag = rs.getDouble("avg_magnitude");
 
-                    String monthName = getMonthName(Integer.parseInt(month));
+                    String monthName = getMonthName(month);
 
                     System.out.printf("%-10s | %-15d | %-15.2f\n",
                             monthName,
@@ -256,92 +286,194 @@ public class SQLQueries {
                 if (rowCount == 0) {
                     System.out.println("Нет данных за " + year + " год");
                 }
-            }
+                return null;
+            }, year);
 
         } catch (SQLException e) {
             System.out.println("Ошибка при получении данных по месяцам: " + e.getMessage());
         }
     }
 
-    // Общий метод для выполнения запросов с временем (с форматированием)
-    private void executeAndPrintQueryWithTime(String sql, String[] headers) {
+    // Землетрясения за период [from, to] по индексу времени
+    public void getEarthquakesBetween(LocalDateTime from, LocalDateTime to, int limit) {
+        System.out.println("\n=== Землетрясения за период " + from + " - " + to + " ===");
+        executeAndPrintQueryWithTime(TIME_RANGE_SQL, new String[]{"ID", "Магнитуда", "Глубина", "Время"},
+                DatabaseManager.toEpochMillis(from), DatabaseManager.toEpochMillis(to), limit);
+    }
+
+    // Данные без вывода на экран: все землетрясения лениво, по fetchSize строк за раз.
+    // Поток держит соединение для чтения, поэтому его нужно закрыть
+    public Stream<Earthquake> streamEarthquakes(int fetchSize) throws SQLException {
+        return dbManager.stream(ALL_EARTHQUAKES_SQL, DatabaseManager::mapEarthquake, fetchSize);
+    }
+
+    // Землетрясения за период [from, to] по возрастанию времени, лениво
+    public Stream<Earthquake> streamEarthquakesBetween(LocalDateTime from, LocalDateTime to, int fetchSize)
+            throws SQLException {
+        return dbManager.stream(FIND_BETWEEN_SQL, DatabaseManager::mapEarthquake, fetchSize,
+                DatabaseManager.toEpochMillis(from), DatabaseManager.toEpochMillis(to));
+    }
+
+    public List<Earthquake> findStrongEarthquakes(double minMagnitude, int limit) throws SQLException {
+        return dbManager.queryList(FIND_STRONG_SQL, DatabaseManager::mapEarthquake, minMagnitude, limit);
+    }
+
+    public List<Earthquake> findDeepestEarthquakes(int limit) throws SQLException {
+        return dbManager.queryList(FIND_DEEPEST_SQL, DatabaseManager::mapEarthquake, limit);
+    }
+
+    // Распределение по магнитуде из агрегатов, корзины как в EarthquakeAnalyzer
+    public Map<String, Long> getRollupMagnitudeDistribution() {
+        return queryBuckets(ROLLUP_MAGNITUDE_SQL, EarthquakeAnalyzer::magnitudeBucketName);
+    }
+
+    public Map<String, Long> getRollupDepthDistribution() {
+        return queryBuckets(ROLLUP_DEPTH_SQL, EarthquakeAnalyzer::depthBucketName);
+    }
+
+    public Map<String, Long> getRollupYearDistribution() {
+        return queryBuckets(ROLLUP_YEAR_SQL, String::valueOf);
+    }
+
+    public Map<String, Long> getRollupMonthDistribution(int year) {
+        return queryBuckets(ROLLUP_MONTH_SQL, this::getMonthName, year);
+    }
+
+    // Количество событий по первым limit регионам из агрегатов
+    public Map<String, Long> getRollupRegionCounts(int limit) {
         try {
-            ResultSet rs = dbManager.executeQuery(sql);
+            return dbManager.query(ROLLUP_REGION_SQL, rs -> {
+                Map<String, Long> counts = new LinkedHashMap<>();
+                while (rs.next()) {
+                    counts.put(rs.getString("name"), rs.getLong("count"));
+                }
+                return counts;
+            }, limit);
+        } catch (SQLException e) {
+            System.out.println("Ошибка при чтении агрегатов: " + e.getMessage());
+            return Collections.emptyMap();
+        }
+    }
 
-            // Вывод заголовков
-            for (String header : headers) {
-                System.out.printf("%-20s", header);
-            }
-            System.out.println();
-            System.out.println("-".repeat(headers.length * 20));
+    // 7. Распределения по агрегатам
+    public void printRollupDistributions() {
+        System.out.println("\n=== Таблица 7: Распределения по агрегатам ===");
+        printDistribution("По магнитуде", getRollupMagnitudeDistribution());
+        printDistribution("По глубине", getRollupDepthDistribution());
+        printDistribution("По годам", getRollupYearDistribution());
+        printDistribution("Топ-10 регионов", getRollupRegionCounts(10));
+    }
+
+    private void printDistribution(String title, Map<String, Long> distribution) {
+        System.out.printf("\n%-30s | %-15s\n", title, "Количество");
+        System.out.println("-".repeat(50));
+        if (distribution.isEmpty()) {
+            System.out.println("Нет данных для отображения");
+        }
+        for (Map.Entry<String, Long> entry : distribution.entrySet()) {
+            System.out.printf("%-30s | %-15d\n",
+                    entry.getKey().length() > 30 ? entry.getKey().substring(0, 27) + "..." : entry.getKey(),
+                    entry.getValue());
+        }
+    }
+
+    // Запрос вида (номер корзины, count) в упорядоченную карту с подписями корзин
+    private Map<String, Long> queryBuckets(String sql, IntFunction<String> label, Object... params) {
+        try {
+            return dbManager.query(sql, rs -> {
+                Map<String, Long> distribution = new LinkedHashMap<>();
+                while (rs.next()) {
+                    distribution.put(label.apply(rs.getInt(1)), rs.getLong("count"));
+                }
+                return distribution;
+            }, params);
+        } catch (SQLException e) {
+            System.out.println("Ошибка при чтении агрегатов: " + e.getMessage());
+            return Collections.emptyMap();
+        }
+    }
 
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    // Общий метод для выполнения запросов с временем (с форматированием).
+    // Вид каждой колонки определяется по заголовку один раз до чтения строк
+    private void executeAndPrintQueryWithTime(String sql, String[] headers, Object... params) {
+        int[] kinds = new int[headers.length];
+        for (int i = 0; i < headers.length; i++) {
+            kinds[i] = columnKind(headers[i]);
+        }
 
-            // Вывод данных
-            int rowCount = 0;
-            while (rs.next()) {
-                for (int i = 1; i <= headers.length; i++) {
-                    String header = headers[i-1];
-                    Object valueObj = null;
+        try {
+            dbManager.query(sql, rs -> {
+                // Вывод заголовков
+                for (String header : headers) {
+                    System.out.printf("%-20s", header);
+                }
+                System.out.println();
+                System.out.println("-".repeat(headers.length * 20));
 
-                    if (header.equals("Время") || header.equalsIgnoreCase("time")) {
-                        // Специальная обработка для времени
-                        long timestamp = rs.getLong(i);
+                // Вывод данных
+                int rowCount = 0;
+                while (rs.next()) {
+                    for (int i = 1; i <= headers.length; i++) {
                         String value;
-                        if (!rs.wasNull() && timestamp > 0) {
-                            try {
-                                Instant instant = Instant.ofEpochMilli(timestamp);
-                                LocalDateTime dateTime = LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
-                                value = dateTime.format(formatter);
-                            } catch (Exception e) {
-                                value = String.valueOf(timestamp);
-                            }
+                        if (kinds[i - 1] == TIME_COLUMN) {
+                            // Специальная обработка для времени
+                            long timestamp = rs.getLong(i);
+                            value = !rs.wasNull() && timestamp > 0 ? formatTime(timestamp) : "Нет данных";
                         } else {
-                            value = "Нет данных";
-                        }
-                        System.out.printf("%-20s", value);
-                    } else {
-                        // Обычная обработка других полей
-                        String value = rs.getString(i);
-                        if (value != null) {
-                            // Форматирование числовых значений
-                            if (value.matches("-?\\d+(\\.\\d+)?")) {
-                                try {
-                                    double num = Double.parseDouble(value);
-                                    if (header.contains("Магнитуд") || header.contains("магнитуд")) {
-                                        value = String.format("%.2f", num);
-                                    } else if (header.contains("Глубина")) {
-                                        value = String.format("%.0f м", num);
-                                    }
-                                } catch (NumberFormatException e) {
-                                    // Оставляем как есть
-                                }
+                            // Обычная обработка других полей
+                            value = rs.getString(i);
+                            if (value != null && kinds[i - 1] != OTHER_COLUMN && NUMBER.matcher(value).matches()) {
+                                // Форматирование числовых значений
+                                double num = Double.parseDouble(value);
+                                value = kinds[i - 1] == MAGNITUDE_COLUMN
+                                        ? String.format("%.2f", num)
+                                        : String.format("%.0f м", num);
                             }
+                            value = value != null && value.length() > 20 ?
+                                    value.substring(0, 17) + "..." :
+                                    (value != null ? value : "N/A");
                         }
-                        System.out.printf("%-20s",
-                                value != null && value.length() > 20 ?
-                                        value.substring(0, 17) + "..." :
-                                        (value != null ? value : "N/A"));
+                        System.out.printf("%-20s", value);
                     }
+                    System.out.println();
+                    rowCount++;
                 }
-                System.out.println();
-                rowCount++;
-            }
 
-            if (rowCount == 0) {
-                System.out.println("Нет данных для отображения");
-            }
+                if (rowCount == 0) {
+                    System.out.println("Нет данных для отображения");
+                }
+                return null;
+            }, params);
 
         } catch (SQLException e) {
             System.out.println("Ошибка выполнения запроса: " + e.getMessage());
         }
     }
 
-    private void executeAndPrintQuery(String sql, String[] headers) {
-        executeAndPrintQueryWithTime(sql, headers);
+    private static int columnKind(String header) {
+        if (header.equals("Время") || header.equalsIgnoreCase("time")) {
+            return TIME_COLUMN;
+        } else if (header.contains("Магнитуд") || header.contains("магнитуд")) {
+            return MAGNITUDE_COLUMN;
+        } else if (header.contains("Глубина")) {
+            return DEPTH_COLUMN;
+        }
+        return OTHER_COLUMN;
     }
 
+    private static String formatTime(long timestamp) {
+        return DatabaseManager.toLocalDateTime(timestamp).format(TIME_FORMATTER);
+    }
+
+    private void executeAndPrintQuery(String sql, String[] headers, Object... params) {
+        executeAndPrintQueryWithTime(sql, headers, params);
+    }
+
+    // Месяц вне 1-12 (в агрегатах это 0 - события без времени) подписывается отдельно
     private String getMonthName(int month) {
+        if (month < 1 || month > 12) {
+            return "Нет данных";
+        }
         String[] monthNames = {
                 "Январь", "Февраль", "Март", "Апрель", "Май", "Июнь",
                 "Июль", "Август", "Сентябрь", "Октябрь", "Ноябрь", "Декабрь"
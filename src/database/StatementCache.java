@@ -0,0 +1,60 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// LRU-кэш подготовленных запросов одного соединения: повторный запрос с тем же
+// текстом SQL не разбирается и не планируется заново. Соединение в каждый момент
+// используется одним потоком (см. ConnectionPool), поэтому кэш не синхронизирован.
+// Вытесненные запросы закрываются
+class StatementCache {
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements;
+
+    StatementCache(Connection connection, int capacity) {
+        this.connection = connection;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > capacity) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // Подготовленный запрос из кэша; закрывать его нельзя, параметры
+    // нужно задавать заново перед каждым выполнением
+    PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement == null || statement.isClosed()) {
+            statement = connection.prepareStatement(sql);
+            statements.put(sql, statement);
+        }
+        return statement;
+    }
+
+    int size() {
+        return statements.size();
+    }
+
+    void close() {
+        for (PreparedStatement statement : statements.values()) {
+            closeQuietly(statement);
+        }
+        statements.clear();
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            System.err.println("Ошибка при закрытии запроса: " + e.getMessage());
+        }
+    }
+}
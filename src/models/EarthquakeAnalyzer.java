@@ -1,110 +1,179 @@
 package models;
 
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BinaryOperator;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntUnaryOperator;
 import java.util.stream.Collectors;
 
 public class EarthquakeAnalyzer {
-    private List<Earthquake> earthquakes;
+    // Порядок корзин распределений
+    private static final String[] MAGNITUDE_BUCKETS = {
+            "< 2.0", "2.0 - 2.9", "3.0 - 3.9", "4.0 - 4.9", "5.0 - 5.9", ">= 6.0"
+    };
+    private static final String[] DEPTH_BUCKETS = {
+            "Мелкие (< 5 км)", "Средние (5-10 км)", "Глубокие (10-20 км)",
+            "Очень глубокие (20-50 км)", "Экстремальные (> 50 км)"
+    };
+
+    // Порог по умолчанию, ниже которого агрегаты считаются последовательно
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 100_000;
+
+    // Колонки событий; события можно добавлять, только если это EarthquakeStore
+    private final EventColumns store;
+
+    // Пул для параллельного режима, null - последовательный режим
+    private ForkJoinPool pool;
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+    // Индексы по времени и по регионам строятся при первом обращении
+    // и перестраиваются, если с тех пор были добавлены события
+    private TimeIndex timeIndex;
+    private RegionIndex regionIndex;
+    // Инкрементальный режим: агрегаты обновляются при добавлении, null - выключен
+    private RunningAggregates aggregates;
 
     public EarthquakeAnalyzer() {
-        this.earthquakes = new ArrayList<>();
+        this(new EarthquakeStore());
     }
 
-    public void addEarthquake(Earthquake earthquake) {
-        earthquakes.add(earthquake);
+    // Анализатор над готовыми колонками: хранилищем, загруженным из снимка,
+    // или снимком, отображенным в память (storage.MappedEventStore)
+    public EarthquakeAnalyzer(EventColumns store) {
+        this.store = store;
     }
 
-    public List<Earthquake> getEarthquakes() {
-        return earthquakes;
+    // Параллельный режим: распределения и статистика считаются на пуле fork/join.
+    // Каждая задача заполняет свой примитивный массив счетчиков, массивы складываются
+    // в конце, поэтому результаты не отличаются от последовательного режима.
+    // Хранилища меньше threshold, а также диапазоны меньше threshold внутри
+    // задачи считаются последовательно. Добавлять события во время расчета нельзя
+    public void setParallel(ForkJoinPool pool, int threshold) {
+        this.pool = pool;
+        this.parallelThreshold = Math.max(1, threshold);
     }
 
-    public Map<String, Object> getStatistics() {
-        Map<String, Object> stats = new LinkedHashMap<>();
-
-        stats.put("Всего землетрясений", earthquakes.size());
-
-        if (!earthquakes.isEmpty()) {
-            // Статистика по магнитудам
-            DoubleSummaryStatistics magnitudeStats = earthquakes.stream()
-                    .mapToDouble(Earthquake::getMagnitude)
-                    .summaryStatistics();
-
-            // Статистика по глубине
-            DoubleSummaryStatistics depthStats = earthquakes.stream()
-                    .filter(eq -> eq.getDepth() > 0)
-                    .mapToDouble(Earthquake::getDepth)
-                    .summaryStatistics();
-
-            // Статистика по времени
-            long withTime = earthquakes.stream()
-                    .filter(eq -> eq.getTime() != null)
-                    .count();
-
-            // Самые частые штаты
-            Map<String, Long> stateCounts = earthquakes.stream()
-                    .filter(eq -> eq.getState() != null && !eq.getState().isEmpty())
-                    .collect(Collectors.groupingBy(
-                            eq -> {
-                                String state = eq.getState();
-                                String[] parts = state.split(",");
-                                String normalized = normalizeStateName(parts[0].trim());
-                                return normalized;
-                            },
-                            Collectors.counting()));
-
-            String topState = stateCounts.entrySet().stream()
-                    .max(Map.Entry.comparingByValue())
-                    .map(Map.Entry::getKey)
-                    .orElse("Нет данных");
-
-            // Заполняем статистику
-            stats.put("Средняя магнитуда", magnitudeStats.getAverage());
-            stats.put("Максимальная магнитуда", magnitudeStats.getMax());
-            stats.put("Минимальная магнитуда", magnitudeStats.getMin());
-            stats.put("Средняя глубина (м)", depthStats.getCount() > 0 ? depthStats.getAverage() : 0);
-            stats.put("Максимальная глубина (м)", depthStats.getCount() > 0 ? depthStats.getMax() : 0);
-            stats.put("С временем", withTime);
-            stats.put("Без времени", earthquakes.size() - withTime);
-            stats.put("Процент с временем", earthquakes.size() > 0 ?
-                    String.format("%.1f%%", (withTime * 100.0 / earthquakes.size())) : "0%");
-            stats.put("Уникальных штатов", stateCounts.size());
-            stats.put("Самый частый штат", topState);
-
-            // Диапазон годов
-            if (withTime > 0) {
-                Optional<Earthquake> oldest = earthquakes.stream()
-                        .filter(eq -> eq.getTime() != null)
-                        .min(Comparator.comparing(Earthquake::getTime));
-                Optional<Earthquake> newest = earthquakes.stream()
-                        .filter(eq -> eq.getTime() != null)
-                        .max(Comparator.comparing(Earthquake::getTime));
-
-                if (oldest.isPresent() && newest.isPresent()) {
-                    stats.put("Период данных",
-                            oldest.get().getTime().getYear() + " - " +
-                                    newest.get().getTime().getYear());
+    public void setParallel(boolean enabled) {
+        setParallel(enabled ? ForkJoinPool.commonPool() : null, parallelThreshold);
+    }
+
+    public boolean isParallel() {
+        return pool != null;
+    }
+
+    // Инкрементальный режим: общая статистика, распределения по магнитудам, глубине,
+    // годам и месяцам и счетчики по штатам обновляются при каждом addEarthquake,
+    // а методы get* читают готовые счетчики вместо прохода по всем событиям.
+    // При включении счетчики один раз заполняются по уже добавленным событиям.
+    // Как и весь анализатор, режим не потокобезопасен: добавления и чтения
+    // должны выполняться из одного потока или под внешней блокировкой
+    public void setIncremental(boolean enabled) {
+        if (!enabled) {
+            aggregates = null;
+            return;
+        }
+        if (aggregates == null) {
+            RunningAggregates running = new RunningAggregates(store, MAGNITUDE_BUCKETS.length, DEPTH_BUCKETS.length);
+            for (int i = 0; i < store.size(); i++) {
+                running.add(i);
+            }
+            aggregates = running;
+        }
+    }
+
+    public boolean isIncremental() {
+        return aggregates != null;
+    }
+
+    public void addEarthquake(Earthquake earthquake) {
+        if (!(store instanceof EarthquakeStore)) {
+            throw new UnsupportedOperationException("Колонки событий доступны только для чтения");
+        }
+        int index = ((EarthquakeStore) store).add(earthquake);
+        if (aggregates != null) {
+            aggregates.add(index);
+        }
+    }
+
+    // Список только для чтения; объекты восстанавливаются из колонок при обращении
+    public List<Earthquake> getEarthquakes() {
+        return new AbstractList<Earthquake>() {
+            @Override
+            public Earthquake get(int index) {
+                if (index < 0 || index >= store.size()) {
+                    throw new IndexOutOfBoundsException("Индекс " + index + ", размер " + store.size());
                 }
+                return store.get(index);
             }
+
+            @Override
+            public int size() {
+                return store.size();
+            }
+        };
+    }
+
+    public EventColumns getStore() {
+        return store;
+    }
+
+    // Индексы по времени и по регионам занимают в куче порядка 16 байт на событие.
+    // Для колонок в куче это приемлемо, а для колонок вне кучи (каталоги больше
+    // кучи) распределения по годам и месяцам считаются проходом по колонкам
+    private boolean isIndexed() {
+        return store instanceof EarthquakeStore;
+    }
+
+    public TimeIndex getTimeIndex() {
+        TimeIndex index = timeIndex;
+        if (index == null || index.size() != store.size()) {
+            index = new TimeIndex(store);
+            timeIndex = index;
+        }
+        return index;
+    }
+
+    public RegionIndex getRegionIndex() {
+        RegionIndex index = regionIndex;
+        if (index == null || index.size() != store.size()) {
+            index = new RegionIndex(store, getTimeIndex());
+            regionIndex = index;
         }
+        return index;
+    }
+
+    // События за период [from, to) по возрастанию времени - двоичный поиск по индексу времени
+    public List<Earthquake> getEarthquakesBetween(LocalDateTime from, LocalDateTime to) {
+        return getTimeIndex().getEarthquakes(from, to);
+    }
 
-        return stats;
+    // События штата по возрастанию времени без просмотра остальных событий.
+    // Штат можно передать в исходном виде - он нормализуется так же, как при подсчете
+    public List<Earthquake> getEarthquakesByRegion(String region) {
+        return getRegionIndex().getEarthquakes(region);
+    }
+
+    // События штата за период [from, to)
+    public List<Earthquake> getEarthquakesByRegion(String region, LocalDateTime from, LocalDateTime to) {
+        return getRegionIndex().getEarthquakes(region, from, to);
+    }
+
+    // Общая статистика считается за один проход по хранилищу
+    public Map<String, Object> getStatistics() {
+        return summarize().toMap();
+    }
+
+    public EarthquakeStatistics summarize() {
+        if (aggregates != null) {
+            return aggregates.summary();
+        }
+        return overRange((from, to) -> EarthquakeStatistics.of(store, from, to), EarthquakeStatistics::combine);
     }
 
     public Map<String, Long> getEarthquakeCountByState() {
-        return earthquakes.stream()
-                .filter(eq -> eq.getState() != null && !eq.getState().isEmpty())
-                .collect(Collectors.groupingBy(
-                        eq -> {
-                            String state = eq.getState();
-                            String[] parts = state.split(",");
-                            String cleanState = parts[0].trim();
-                            cleanState = normalizeStateName(cleanState);
-                            if (cleanState.length() > 25) {
-                                return cleanState.substring(0, 25) + "...";
-                            }
-                            return cleanState;
-                        },
-                        Collectors.counting()))
+        return countByNormalizedState(true)
                 .entrySet().stream()
                 .filter(entry -> entry.getValue() > 5)
                 .sorted((a, b) -> Long.compare(b.getValue(), a.getValue()))
@@ -116,161 +185,155 @@ public class EarthquakeAnalyzer {
                         LinkedHashMap::new));
     }
 
-    // Нормализация имени штата
-    private String normalizeStateName(String stateName) {
-        if (stateName == null || stateName.isEmpty()) {
-            return "";
+    // Подсчет событий по нормализованному штату: гистограмма по кодам,
+    // присвоенным при добавлении событий, затем перевод кодов в имена
+    private Map<String, Long> countByNormalizedState(boolean truncate) {
+        if (aggregates != null) {
+            Map<String, Long> result = new HashMap<>();
+            aggregates.stateCounts().forEach((cleanState, count) ->
+                    result.merge(truncate && cleanState.length() > 25 ? cleanState.substring(0, 25) + "..." : cleanState,
+                            count, Long::sum));
+            return result;
         }
 
-        String lower = stateName.toLowerCase().trim();
-
-        // Специальная обработка для составных названий штатов
-        if (lower.contains("new ")) {
-            // Для штатов с "New" - первая буква каждого слова заглавная
-            return Arrays.stream(lower.split("\\s+"))
-                    .map(word -> {
-                        if (word.length() > 0) {
-                            return Character.toUpperCase(word.charAt(0)) + word.substring(1);
-                        }
-                        return word;
-                    })
-                    .collect(Collectors.joining(" "));
-        } else if (lower.contains("north ") || lower.contains("south ") ||
-                lower.contains("west ") || lower.contains("east ")) {
-            // Для направлений (North, South, etc.)
-            return Arrays.stream(lower.split("\\s+"))
-                    .map(word -> {
-                        if (word.length() > 0) {
-                            return Character.toUpperCase(word.charAt(0)) + word.substring(1);
-                        }
-                        return word;
-                    })
-                    .collect(Collectors.joining(" "));
-        } else {
-            // Для обычных штатов - первая буква заглавная, остальные строчные
-            if (lower.length() > 0) {
-                return Character.toUpperCase(lower.charAt(0)) + lower.substring(1);
+        StateNormalizer regions = store.regions();
+        long[] counts = histogram(regions.size(), store::regionCode);
+
+        Map<String, Long> result = new HashMap<>();
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] == 0) {
+                continue;
             }
-            return lower;
+            String cleanState = regions.name(code);
+            if (truncate && cleanState.length() > 25) {
+                cleanState = cleanState.substring(0, 25) + "...";
+            }
+            result.merge(cleanState, counts[code], Long::sum);
         }
+        return result;
     }
 
     public Map<String, Long> getMagnitudeDistribution() {
-        Map<String, Long> distribution = earthquakes.stream()
-                .collect(Collectors.groupingBy(
-                        eq -> {
-                            double mag = eq.getMagnitude();
-                            if (mag < 2.0) return "< 2.0";
-                            else if (mag < 3.0) return "2.0 - 2.9";
-                            else if (mag < 4.0) return "3.0 - 3.9";
-                            else if (mag < 5.0) return "4.0 - 4.9";
-                            else if (mag < 6.0) return "5.0 - 5.9";
-                            else return ">= 6.0";
-                        },
-                        Collectors.counting()));
-
-        // Сортируем по ключам
-        return distribution.entrySet().stream()
-                .sorted((a, b) -> {
-                    String[] order = {"< 2.0", "2.0 - 2.9", "3.0 - 3.9", "4.0 - 4.9", "5.0 - 5.9", ">= 6.0"};
-                    int indexA = Arrays.asList(order).indexOf(a.getKey());
-                    int indexB = Arrays.asList(order).indexOf(b.getKey());
-                    return Integer.compare(indexA, indexB);
-                })
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        Map.Entry::getValue,
-                        (v1, v2) -> v1,
-                        LinkedHashMap::new));
+        if (aggregates != null) {
+            return toBucketMap(MAGNITUDE_BUCKETS, aggregates.magnitudeCounts());
+        }
+        long[] counts = histogram(MAGNITUDE_BUCKETS.length, i -> magnitudeBucket(store.magnitude(i)));
+        return toBucketMap(MAGNITUDE_BUCKETS, counts);
     }
 
     public Map<String, Long> getDepthDistribution() {
-        return earthquakes.stream()
-                .filter(eq -> eq.getDepth() > 0)
-                .collect(Collectors.groupingBy(
-                        eq -> {
-                            double depth = eq.getDepth();
-                            if (depth < 5000) return "Мелкие (< 5 км)";
-                            else if (depth < 10000) return "Средние (5-10 км)";
-                            else if (depth < 20000) return "Глубокие (10-20 км)";
-                            else if (depth < 50000) return "Очень глубокие (20-50 км)";
-                            else return "Экстремальные (> 50 км)";
-                        },
-                        Collectors.counting()))
-                .entrySet().stream()
-                .sorted((a, b) -> {
-                    String[] order = {
-                            "Мелкие (< 5 км)", "Средние (5-10 км)", "Глубокие (10-20 км)",
-                            "Очень глубокие (20-50 км)", "Экстремальные (> 50 км)"
-                    };
-                    int indexA = Arrays.asList(order).indexOf(a.getKey());
-                    int indexB = Arrays.asList(order).indexOf(b.getKey());
-                    return Integer.compare(indexA, indexB);
-                })
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        Map.Entry::getValue,
-                        (v1, v2) -> v1,
-                        LinkedHashMap::new));
+        if (aggregates != null) {
+            return toBucketMap(DEPTH_BUCKETS, aggregates.depthCounts());
+        }
+        long[] counts = histogram(DEPTH_BUCKETS.length, i -> {
+            double depth = store.depth(i);
+            return depth > 0 ? depthBucket(depth) : -1;
+        });
+        return toBucketMap(DEPTH_BUCKETS, counts);
     }
 
+    // Распределения по годам и месяцам читаются из границ месяцев индекса времени,
+    // без индекса - считаются гистограммой по колонке времени
     public Map<String, Long> getYearDistribution() {
-        return earthquakes.stream()
-                .filter(eq -> eq.getTime() != null)
-                .collect(Collectors.groupingBy(
-                        eq -> String.valueOf(eq.getTime().getYear()),
-                        Collectors.counting()))
-                .entrySet().stream()
-                .sorted(Map.Entry.comparingByKey())
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        Map.Entry::getValue,
-                        (v1, v2) -> v1,
-                        LinkedHashMap::new));
+        Map<String, Long> distribution = new TreeMap<>();
+
+        if (store.minTime() != EarthquakeStore.NO_TIME) {
+            int minYear = EarthquakeStore.yearOf(store.minTime());
+            int maxYear = EarthquakeStore.yearOf(store.maxTime());
+            long[] counts;
+            if (aggregates != null) {
+                counts = new long[maxYear - minYear + 1];
+                aggregates.monthCounts().forEach((year, months) -> {
+                    for (int month = 1; month <= 12; month++) {
+                        counts[year - minYear] += months[month];
+                    }
+                });
+            } else if (isIndexed()) {
+                TimeIndex index = getTimeIndex();
+                counts = new long[maxYear - minYear + 1];
+                for (int k = 0; k < counts.length; k++) {
+                    counts[k] = index.countInYear(minYear + k);
+                }
+            } else {
+                counts = histogram(maxYear - minYear + 1,
+                        i -> store.hasTime(i) ? EarthquakeStore.yearOf(store.time(i)) - minYear : -1);
+            }
+            for (int k = 0; k < counts.length; k++) {
+                if (counts[k] > 0) {
+                    distribution.put(String.valueOf(minYear + k), counts[k]);
+                }
+            }
+        }
+
+        return new LinkedHashMap<>(distribution);
     }
 
     public Map<String, Long> getMonthDistribution(int year) {
-        return earthquakes.stream()
-                .filter(eq -> eq.getTime() != null && eq.getTime().getYear() == year)
-                .collect(Collectors.groupingBy(
-                        eq -> String.format("%02d", eq.getTime().getMonthValue()),
-                        Collectors.counting()))
-                .entrySet().stream()
-                .sorted(Map.Entry.comparingByKey())
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        Map.Entry::getValue,
-                        (v1, v2) -> v1,
-                        LinkedHashMap::new));
+        long[] counts;
+        if (aggregates != null) {
+            counts = aggregates.monthCounts(year);
+        } else if (isIndexed()) {
+            TimeIndex index = getTimeIndex();
+            counts = new long[13];
+            for (int month = 1; month <= 12; month++) {
+                counts[month] = index.countInMonth(year, month);
+            }
+        } else {
+            counts = histogram(13, i -> {
+                if (!store.hasTime(i)) {
+                    return -1;
+                }
+                long time = store.time(i);
+                return EarthquakeStore.yearOf(time) == year ? EarthquakeStore.monthOf(time) : -1;
+            });
+        }
+
+        Map<String, Long> distribution = new LinkedHashMap<>();
+        for (int month = 1; month <= 12; month++) {
+            if (counts[month] > 0) {
+                distribution.put(String.format("%02d", month), counts[month]);
+            }
+        }
+        return distribution;
     }
 
     public List<Earthquake> getTopByMagnitude(int limit) {
-        return earthquakes.stream()
-                .sorted((a, b) -> Double.compare(b.getMagnitude(), a.getMagnitude()))
-                .limit(limit)
-                .collect(Collectors.toList());
+        return getTop(limit, store::magnitude, null);
     }
 
     public List<Earthquake> getTopByDepth(int limit) {
-        return earthquakes.stream()
-                .filter(eq -> eq.getDepth() > 0)
-                .sorted((a, b) -> Double.compare(b.getDepth(), a.getDepth()))
-                .limit(limit)
-                .collect(Collectors.toList());
+        return getTop(limit, store::depth, i -> store.depth(i) > 0);
+    }
+
+    // Самые поздние события
+    public List<Earthquake> getTopByTime(int limit) {
+        return getTop(limit, store::time, store::hasTime);
+    }
+
+    // Топ-k по любой числовой колонке хранилища: key и filter получают индекс события
+    // в хранилище (getStore()), filter может быть null. Отбор идет ограниченной кучей,
+    // в параллельном режиме кучи частей сливаются
+    public List<Earthquake> getTop(int limit, IntToDoubleFunction key, IntPredicate filter) {
+        TopK top = overRange((from, to) -> {
+            TopK part = new TopK(limit);
+            for (int i = from; i < to; i++) {
+                if (filter == null || filter.test(i)) {
+                    part.offer(i, key.applyAsDouble(i));
+                }
+            }
+            return part;
+        }, TopK::merge);
+
+        List<Earthquake> result = new ArrayList<>(top.size());
+        for (int index : top.sortedIndices()) {
+            result.add(store.get(index));
+        }
+        return result;
     }
 
     // Получить статистику по штатам
     public Map<String, Long> getStateStatistics() {
-        return earthquakes.stream()
-                .filter(eq -> eq.getState() != null && !eq.getState().isEmpty())
-                .collect(Collectors.groupingBy(
-                        eq -> {
-                            String state = eq.getState();
-                            String[] parts = state.split(",");
-                            String cleanState = parts[0].trim();
-                            return normalizeStateName(cleanState);
-                        },
-                        Collectors.counting()))
+        return countByNormalizedState(false)
                 .entrySet().stream()
                 .sorted((a, b) -> Long.compare(b.getValue(), a.getValue()))
                 .collect(Collectors.toMap(
@@ -279,4 +342,73 @@ public class EarthquakeAnalyzer {
                         (v1, v2) -> v1,
                         LinkedHashMap::new));
     }
-}
\ No newline at end of file
+
+    // Подписи корзин по номеру - для распределений, посчитанных вне анализатора
+    // (например, по агрегатам в базе данных) с теми же границами
+    public static String magnitudeBucketName(int bucket) {
+        return MAGNITUDE_BUCKETS[bucket];
+    }
+
+    public static String depthBucketName(int bucket) {
+        return DEPTH_BUCKETS[bucket];
+    }
+
+    static int magnitudeBucket(double mag) {
+        if (mag < 2.0) return 0;
+        else if (mag < 3.0) return 1;
+        else if (mag < 4.0) return 2;
+        else if (mag < 5.0) return 3;
+        else if (mag < 6.0) return 4;
+        else return 5;
+    }
+
+    static int depthBucket(double depth) {
+        if (depth < 5000) return 0;
+        else if (depth < 10000) return 1;
+        else if (depth < 20000) return 2;
+        else if (depth < 50000) return 3;
+        else return 4;
+    }
+
+    // Корзины в заданном порядке, пустые корзины не выводятся
+    private static Map<String, Long> toBucketMap(String[] buckets, long[] counts) {
+        Map<String, Long> distribution = new LinkedHashMap<>();
+        for (int i = 0; i < buckets.length; i++) {
+            if (counts[i] > 0) {
+                distribution.put(buckets[i], counts[i]);
+            }
+        }
+        return distribution;
+    }
+
+    // Гистограмма по всему хранилищу: bucketOf возвращает номер корзины для индекса
+    // события или -1, если событие не учитывается
+    private long[] histogram(int buckets, IntUnaryOperator bucketOf) {
+        return overRange((from, to) -> {
+            long[] counts = new long[buckets];
+            for (int i = from; i < to; i++) {
+                int bucket = bucketOf.applyAsInt(i);
+                if (bucket >= 0) {
+                    counts[bucket]++;
+                }
+            }
+            return counts;
+        }, EarthquakeAnalyzer::addCounts);
+    }
+
+    // Расчет по всему хранилищу: последовательно или на пуле fork/join
+    private <T> T overRange(RangeTask.RangeFunction<T> leaf, BinaryOperator<T> merge) {
+        int size = store.size();
+        if (pool == null || size < parallelThreshold) {
+            return leaf.apply(0, size);
+        }
+        return pool.invoke(new RangeTask<>(leaf, merge, 0, size, parallelThreshold));
+    }
+
+    private static long[] addCounts(long[] left, long[] right) {
+        for (int i = 0; i < left.length; i++) {
+            left[i] += right[i];
+        }
+        return left;
+    }
+}
@@ -0,0 +1,63 @@
+package models;
+
+import testutils.Benchmark;
+import testutils.SyntheticData;
+
+import java.util.concurrent.ForkJoinPool;
+
+// Бенчмарк агрегаций EarthquakeAnalyzer в последовательном, параллельном и инкрементальном режимах.
+// Одна операция - один вызов агрегации по всему набору.
+// Запуск: java -Xmx4g -cp out models.EarthquakeAnalyzerBenchmark [1k|1m|10m]
+public class EarthquakeAnalyzerBenchmark {
+
+    public static void main(String[] args) {
+        int rows = Benchmark.parseScale(args);
+        EarthquakeAnalyzer analyzer = new EarthquakeAnalyzer();
+        for (int i = 0; i < rows; i++) {
+            analyzer.addEarthquake(SyntheticData.earthquake(i));
+        }
+
+        Benchmark.printHeader("EarthquakeAnalyzer, событий: " + rows);
+        runAll(analyzer, "");
+
+        analyzer.setParallel(ForkJoinPool.commonPool(), EarthquakeAnalyzer.DEFAULT_PARALLEL_THRESHOLD);
+        runAll(analyzer, " [parallel]");
+
+        // В инкрементальном режиме агрегаты читаются из счетчиков
+        analyzer.setParallel(false);
+        analyzer.setIncremental(true);
+        runAll(analyzer, " [incremental]");
+    }
+
+    private static void runAll(EarthquakeAnalyzer analyzer, String suffix) {
+        Benchmark.run("addEarthquake (событий)" + suffix, 100_000, operations -> {
+            EarthquakeAnalyzer target = new EarthquakeAnalyzer();
+            // Стоимость добавления с обновлением счетчиков в инкрементальном режиме
+            target.setIncremental(analyzer.isIncremental());
+            for (int i = 0; i < operations; i++) {
+                target.addEarthquake(SyntheticData.earthquake(i));
+            }
+            Benchmark.consume(target);
+        });
+        Benchmark.run("getStatistics" + suffix, 1, operations -> Benchmark.consume(analyzer.getStatistics()));
+        Benchmark.run("getEarthquakeCountByState" + suffix, 1,
+                operations -> Benchmark.consume(analyzer.getEarthquakeCountByState()));
+        Benchmark.run("getMagnitudeDistribution" + suffix, 1,
+                operations -> Benchmark.consume(analyzer.getMagnitudeDistribution()));
+        Benchmark.run("getDepthDistribution" + suffix, 1,
+                operations -> Benchmark.consume(analyzer.getDepthDistribution()));
+        // Построение индекса времени отдельно от запросов к нему
+        Benchmark.run("new TimeIndex" + suffix, 1,
+                operations -> Benchmark.consume(new TimeIndex(analyzer.getStore())));
+        Benchmark.run("getYearDistribution" + suffix, 1,
+                operations -> Benchmark.consume(analyzer.getYearDistribution()));
+        Benchmark.run("getMonthDistribution(2014)" + suffix, 1,
+                operations -> Benchmark.consume(analyzer.getMonthDistribution(2014)));
+        Benchmark.run("getTopByMagnitude(10)" + suffix, 1,
+                operations -> Benchmark.consume(analyzer.getTopByMagnitude(10)));
+        Benchmark.run("getTopByDepth(10)" + suffix, 1,
+                operations -> Benchmark.consume(analyzer.getTopByDepth(10)));
+        Benchmark.run("getStateStatistics" + suffix, 1,
+                operations -> Benchmark.consume(analyzer.getStateStatistics()));
+    }
+}
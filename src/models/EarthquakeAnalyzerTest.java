@@ -0,0 +1,305 @@
+package models;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+public class EarthquakeAnalyzerTest {
+
+    public static void main(String[] args) {
+        System.out.println("=== Запуск тестов EarthquakeAnalyzer ===");
+
+        try {
+            testStatistics();
+            testStatisticsCombine();
+            testParallelMatchesSequential();
+            testTopK();
+            testRegionIndex();
+            testTimeIndex();
+            testIncremental();
+            System.out.println("✓ Все тесты EarthquakeAnalyzer пройдены успешно!");
+        } catch (AssertionError e) {
+            System.err.println("✗ Тест провален: " + e.getMessage());
+        }
+    }
+
+    // Детерминированный набор данных для тестов
+    static List<Earthquake> sampleEarthquakes(int count) {
+        String[] states = {"West Virginia", "NEW YORK", "new york, USA", "southern Quebec, Canada", "Ohio", ""};
+        List<Earthquake> earthquakes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            LocalDateTime time = i % 11 == 0 ? null :
+                    LocalDateTime.of(1990 + i % 25, i % 12 + 1, i % 28 + 1, i % 24, i % 60, 0);
+            earthquakes.add(new Earthquake("eq" + i, (i * 7919) % 60000, "md",
+                    (i * 31 % 70) / 10.0, states[i % states.length], time));
+        }
+        return earthquakes;
+    }
+
+    private static void testStatistics() {
+        EarthquakeAnalyzer analyzer = new EarthquakeAnalyzer();
+        sampleEarthquakes(1000).forEach(analyzer::addEarthquake);
+
+        Map<String, Object> stats = analyzer.getStatistics();
+        assert ((Number) stats.get("Всего землетрясений")).longValue() == 1000 : "Неверное количество событий";
+        assert ((Number) stats.get("Без времени")).longValue() == 91 : "Неверное количество событий без времени";
+        assert "1990 - 2014".equals(stats.get("Период данных")) : "Неверный период: " + stats.get("Период данных");
+        assert "New York".equals(stats.get("Самый частый штат")) : "Неверный штат: " + stats.get("Самый частый штат");
+
+        System.out.println("  ✓ testStatistics пройден");
+    }
+
+    private static void testStatisticsCombine() {
+        List<Earthquake> earthquakes = sampleEarthquakes(1000);
+
+        EarthquakeStatistics whole = new EarthquakeStatistics();
+        earthquakes.forEach(whole);
+
+        EarthquakeStatistics left = new EarthquakeStatistics();
+        EarthquakeStatistics right = new EarthquakeStatistics();
+        earthquakes.subList(0, 400).forEach(left);
+        earthquakes.subList(400, 1000).forEach(right);
+
+        Map<String, Object> expected = whole.toMap();
+        Map<String, Object> combined = left.combine(right).toMap();
+        assert expected.get("Всего землетрясений").equals(combined.get("Всего землетрясений")) : "Не совпадает количество";
+        assert expected.get("Уникальных штатов").equals(combined.get("Уникальных штатов")) : "Не совпадают штаты";
+        assert expected.get("Период данных").equals(combined.get("Период данных")) : "Не совпадает период";
+        assert expected.get("Максимальная глубина (м)").equals(combined.get("Максимальная глубина (м)")) :
+                "Не совпадает максимальная глубина";
+
+        EarthquakeStatistics parallel = earthquakes.parallelStream().collect(EarthquakeStatistics.collector());
+        assert parallel.getTotal() == 1000 : "Параллельный сборщик потерял события";
+        assert parallel.getWithTime() == whole.getWithTime() : "Параллельный сборщик: неверное число с временем";
+
+        System.out.println("  ✓ testStatisticsCombine пройден");
+    }
+
+    private static void testParallelMatchesSequential() {
+        EarthquakeAnalyzer sequential = new EarthquakeAnalyzer();
+        EarthquakeAnalyzer parallel = new EarthquakeAnalyzer();
+        for (Earthquake eq : sampleEarthquakes(20000)) {
+            sequential.addEarthquake(eq);
+            parallel.addEarthquake(eq);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            // Низкий порог, чтобы задача действительно делилась
+            parallel.setParallel(pool, 500);
+            assert parallel.isParallel() : "Параллельный режим не включен";
+
+            assert sequential.getMagnitudeDistribution().equals(parallel.getMagnitudeDistribution()) :
+                    "Распределение по магнитудам отличается";
+            assert sequential.getDepthDistribution().equals(parallel.getDepthDistribution()) :
+                    "Распределение по глубине отличается";
+            assert sequential.getYearDistribution().equals(parallel.getYearDistribution()) :
+                    "Распределение по годам отличается";
+            assert sequential.getMonthDistribution(2000).equals(parallel.getMonthDistribution(2000)) :
+                    "Распределение по месяцам отличается";
+            assert sequential.getStateStatistics().equals(parallel.getStateStatistics()) :
+                    "Статистика по штатам отличается";
+            assert sequential.getStatistics().get("Период данных").equals(parallel.getStatistics().get("Период данных")) :
+                    "Период данных отличается";
+            assert sequential.summarize().getWithTime() == parallel.summarize().getWithTime() :
+                    "Количество событий с временем отличается";
+        } finally {
+            pool.shutdown();
+        }
+
+        System.out.println("  ✓ testParallelMatchesSequential пройден");
+    }
+
+    private static void testTopK() {
+        List<Earthquake> earthquakes = sampleEarthquakes(5000);
+        EarthquakeAnalyzer analyzer = new EarthquakeAnalyzer();
+        earthquakes.forEach(analyzer::addEarthquake);
+
+        // Эталон - полная устойчивая сортировка, при равных магнитудах порядок исходный
+        List<String> expected = earthquakes.stream()
+                .sorted(Comparator.comparingDouble(Earthquake::getMagnitude).reversed())
+                .limit(25)
+                .map(Earthquake::getId)
+                .collect(Collectors.toList());
+        List<String> actual = analyzer.getTopByMagnitude(25).stream()
+                .map(Earthquake::getId)
+                .collect(Collectors.toList());
+        assert expected.equals(actual) : "Топ по магнитуде отличается от сортировки: " + actual;
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            analyzer.setParallel(pool, 300);
+            List<String> parallel = analyzer.getTopByMagnitude(25).stream()
+                    .map(Earthquake::getId)
+                    .collect(Collectors.toList());
+            assert expected.equals(parallel) : "Параллельный топ отличается: " + parallel;
+        } finally {
+            analyzer.setParallel(false);
+            pool.shutdown();
+        }
+
+        List<Earthquake> deepest = analyzer.getTopByDepth(5);
+        assert deepest.size() == 5 : "Должно быть 5 самых глубоких";
+        assert deepest.get(0).getDepth() >= deepest.get(4).getDepth() : "Топ по глубине не упорядочен";
+
+        List<Earthquake> latest = analyzer.getTopByTime(3);
+        assert latest.get(0).getTime().getYear() == 2014 : "Самое позднее событие должно быть в 2014 году";
+
+        assert analyzer.getTopByMagnitude(0).isEmpty() : "Топ-0 должен быть пустым";
+
+        System.out.println("  ✓ testTopK пройден");
+    }
+
+    private static void testRegionIndex() {
+        List<Earthquake> earthquakes = sampleEarthquakes(3000);
+        EarthquakeAnalyzer analyzer = new EarthquakeAnalyzer();
+        earthquakes.forEach(analyzer::addEarthquake);
+
+        // Эталон - полный просмотр с той же нормализацией
+        List<Earthquake> newYork = analyzer.getEarthquakesByRegion("new york");
+        long expected = earthquakes.stream()
+                .filter(eq -> !eq.getState().isEmpty())
+                .filter(eq -> StateNormalizer.normalize(eq.getState()).equals(StateNormalizer.normalize("NEW YORK")))
+                .count();
+        assert newYork.size() == expected : "Неверное число событий региона: " + newYork.size();
+        assert analyzer.getEarthquakesByRegion("New York, USA").size() == expected : "Регион должен нормализоваться";
+
+        // Сначала события без времени, затем по возрастанию времени
+        for (int i = 1; i < newYork.size(); i++) {
+            LocalDateTime previous = newYork.get(i - 1).getTime();
+            LocalDateTime current = newYork.get(i).getTime();
+            assert previous == null || (current != null && !current.isBefore(previous)) : "Список региона не упорядочен";
+        }
+
+        LocalDateTime from = LocalDateTime.of(2000, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2005, 6, 1, 0, 0);
+        List<String> expectedRange = earthquakes.stream()
+                .filter(eq -> eq.getTime() != null && !eq.getTime().isBefore(from) && eq.getTime().isBefore(to))
+                .filter(eq -> StateNormalizer.normalize(eq.getState()).equals(StateNormalizer.normalize("Ohio")))
+                .sorted(Comparator.comparing(Earthquake::getTime))
+                .map(Earthquake::getId)
+                .collect(Collectors.toList());
+        List<String> actualRange = analyzer.getEarthquakesByRegion("Ohio", from, to).stream()
+                .map(Earthquake::getId)
+                .collect(Collectors.toList());
+        assert !expectedRange.isEmpty() && expectedRange.equals(actualRange) : "Выборка за период отличается: " + actualRange;
+
+        assert analyzer.getEarthquakesByRegion("Atlantis").isEmpty() : "Неизвестный регион должен быть пустым";
+        assert analyzer.getEarthquakesByRegion("").isEmpty() : "Пустой регион должен быть пустым";
+
+        // Индекс перестраивается после добавления событий
+        analyzer.addEarthquake(new Earthquake("extra", 100, "md", 2.0, "Ohio", LocalDateTime.of(2001, 1, 1, 0, 0)));
+        assert analyzer.getEarthquakesByRegion("Ohio", from, to).size() == actualRange.size() + 1
+                : "Новое событие должно попасть в индекс";
+
+        System.out.println("  ✓ testRegionIndex пройден");
+    }
+
+    private static void testTimeIndex() {
+        List<Earthquake> earthquakes = sampleEarthquakes(4000);
+        EarthquakeAnalyzer analyzer = new EarthquakeAnalyzer();
+        earthquakes.forEach(analyzer::addEarthquake);
+        TimeIndex index = analyzer.getTimeIndex();
+
+        List<Earthquake> timed = earthquakes.stream()
+                .filter(eq -> eq.getTime() != null)
+                .collect(Collectors.toList());
+        assert index.countWithTime() == timed.size() : "Неверное число событий со временем";
+
+        LocalDateTime oldest = timed.stream().map(Earthquake::getTime).min(Comparator.naturalOrder()).get();
+        LocalDateTime newest = timed.stream().map(Earthquake::getTime).max(Comparator.naturalOrder()).get();
+        assert EarthquakeStore.toLocalDateTime(index.minTime()).equals(oldest) : "Неверное минимальное время";
+        assert EarthquakeStore.toLocalDateTime(index.maxTime()).equals(newest) : "Неверное максимальное время";
+
+        // Период [from, to) сверяется с полным просмотром, порядок - по времени
+        LocalDateTime from = LocalDateTime.of(1998, 3, 15, 12, 0);
+        LocalDateTime to = LocalDateTime.of(2003, 7, 1, 0, 0);
+        List<String> expected = timed.stream()
+                .filter(eq -> !eq.getTime().isBefore(from) && eq.getTime().isBefore(to))
+                .sorted(Comparator.comparing(Earthquake::getTime))
+                .map(Earthquake::getId)
+                .collect(Collectors.toList());
+        List<String> actual = analyzer.getEarthquakesBetween(from, to).stream()
+                .map(Earthquake::getId)
+                .collect(Collectors.toList());
+        assert !expected.isEmpty() && expected.equals(actual) : "Выборка за период отличается: " + actual.size();
+        assert index.count(EarthquakeStore.toEpochMillis(from), EarthquakeStore.toEpochMillis(to)) == expected.size()
+                : "Неверное количество за период";
+        assert analyzer.getEarthquakesBetween(to, from).isEmpty() : "Пустой период должен быть пустым";
+
+        // Границы месяцев
+        for (int month = 1; month <= 12; month++) {
+            int m = month;
+            long count = timed.stream()
+                    .filter(eq -> eq.getTime().getYear() == 2000 && eq.getTime().getMonthValue() == m)
+                    .count();
+            assert index.countInMonth(2000, month) == count : "Неверное количество за месяц " + month;
+        }
+        assert index.countInYear(1989) == 0 && index.countInYear(2100) == 0 : "Годы вне данных должны быть пустыми";
+        long year2000 = timed.stream().filter(eq -> eq.getTime().getYear() == 2000).count();
+        assert analyzer.getYearDistribution().get("2000") == year2000 : "Неверное распределение по годам";
+
+        // Без событий со временем индекс пустой
+        EarthquakeAnalyzer untimed = new EarthquakeAnalyzer();
+        untimed.addEarthquake(new Earthquake("x", 10, "md", 1.0, "Ohio", null));
+        assert untimed.getTimeIndex().maxTime() == EarthquakeStore.NO_TIME : "Максимум без времени должен быть NO_TIME";
+        assert untimed.getYearDistribution().isEmpty() && untimed.getMonthDistribution(2000).isEmpty()
+                : "Распределения без времени должны быть пустыми";
+
+        System.out.println("  ✓ testTimeIndex пройден");
+    }
+
+    private static void testIncremental() {
+        List<Earthquake> earthquakes = sampleEarthquakes(3000);
+        EarthquakeAnalyzer full = new EarthquakeAnalyzer();
+        EarthquakeAnalyzer incremental = new EarthquakeAnalyzer();
+
+        // Часть событий добавлена до включения режима, часть - после
+        for (int i = 0; i < 1000; i++) {
+            full.addEarthquake(earthquakes.get(i));
+            incremental.addEarthquake(earthquakes.get(i));
+        }
+        incremental.setIncremental(true);
+        assert incremental.isIncremental() : "Режим должен быть включен";
+
+        for (int i = 1000; i < earthquakes.size(); i++) {
+            full.addEarthquake(earthquakes.get(i));
+            incremental.addEarthquake(earthquakes.get(i));
+
+            // Чтения между добавлениями
+            if (i % 500 == 0 || i == earthquakes.size() - 1) {
+                assert full.getStatistics().equals(incremental.getStatistics()) : "Статистика отличается на " + i;
+                assert full.getMagnitudeDistribution().equals(incremental.getMagnitudeDistribution())
+                        : "Распределение по магнитудам отличается на " + i;
+                assert full.getDepthDistribution().equals(incremental.getDepthDistribution())
+                        : "Распределение по глубине отличается на " + i;
+                assert full.getYearDistribution().equals(incremental.getYearDistribution())
+                        : "Распределение по годам отличается на " + i;
+                assert full.getMonthDistribution(2003).equals(incremental.getMonthDistribution(2003))
+                        : "Распределение по месяцам отличается на " + i;
+                assert full.getStateStatistics().equals(incremental.getStateStatistics())
+                        : "Статистика по штатам отличается на " + i;
+                assert full.getEarthquakeCountByState().equals(incremental.getEarthquakeCountByState())
+                        : "Топ штатов отличается на " + i;
+            }
+        }
+        assert incremental.getMonthDistribution(1900).isEmpty() : "Год без событий должен быть пустым";
+
+        // Снимок статистики не меняется при следующих добавлениях
+        EarthquakeStatistics snapshot = incremental.summarize();
+        long total = snapshot.getTotal();
+        incremental.addEarthquake(new Earthquake("extra", 100, "md", 2.0, "Ohio", null));
+        assert snapshot.getTotal() == total : "Возвращенная статистика не должна меняться";
+        assert incremental.summarize().getTotal() == total + 1 : "Новое событие должно учитываться";
+
+        incremental.setIncremental(false);
+        full.addEarthquake(new Earthquake("extra", 100, "md", 2.0, "Ohio", null));
+        assert full.getStatistics().equals(incremental.getStatistics()) : "После выключения - полный пересчет";
+
+        System.out.println("  ✓ testIncremental пройден");
+    }
+}
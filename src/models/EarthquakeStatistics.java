@@ -0,0 +1,145 @@
+package models;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collector;
+
+// Однопроходный накопитель общей статистики: магнитуды, глубины, наличие времени,
+// диапазон времени и количество событий по штатам считаются за один обход.
+// Можно подключить прямо к CSVReader.readCSV(filename, sink) - тогда статистика
+// считается по мере разбора строк без хранения всего списка землетрясений.
+// Накопители по разным частям данных объединяются через combine(), поэтому
+// их можно считать параллельно
+public class EarthquakeStatistics implements Consumer<Earthquake> {
+    private long total;
+    private long withTime;
+    private final DoubleSummaryStatistics magnitudeStats = new DoubleSummaryStatistics();
+    private final DoubleSummaryStatistics depthStats = new DoubleSummaryStatistics();
+    private final Map<String, Long> stateCounts = new HashMap<>();
+    // Кэш нормализации для событий, поступающих через accept()
+    private final StateNormalizer normalizer = new StateNormalizer();
+    private long oldest = Long.MAX_VALUE;
+    private long newest = Long.MIN_VALUE;
+
+    @Override
+    public void accept(Earthquake eq) {
+        long time = eq.getTime() != null ? EarthquakeStore.toEpochMillis(eq.getTime()) : EarthquakeStore.NO_TIME;
+        record(eq.getMagnitude(), eq.getDepth(), time);
+
+        int code = normalizer.encode(eq.getState());
+        if (code != StateNormalizer.NO_STATE) {
+            stateCounts.merge(normalizer.name(code), 1L, Long::sum);
+        }
+    }
+
+    // Накопитель по диапазону [from, to) колонок событий за один проход.
+    // Штаты считаются по нормализованным кодам хранилища
+    public static EarthquakeStatistics of(EventColumns store, int from, int to) {
+        EarthquakeStatistics statistics = new EarthquakeStatistics();
+        StateNormalizer regions = store.regions();
+        long[] regionCounts = new long[regions.size()];
+
+        for (int i = from; i < to; i++) {
+            statistics.record(store.magnitude(i), store.depth(i), store.time(i));
+            int code = store.regionCode(i);
+            if (code != StateNormalizer.NO_STATE) {
+                regionCounts[code]++;
+            }
+        }
+
+        for (int code = 0; code < regionCounts.length; code++) {
+            if (regionCounts[code] > 0) {
+                statistics.stateCounts.merge(regions.name(code), regionCounts[code], Long::sum);
+            }
+        }
+        return statistics;
+    }
+
+    // Учитывает одно событие колонок; штат - по нормализованному коду
+    void add(EventColumns store, int index) {
+        record(store.magnitude(index), store.depth(index), store.time(index));
+        int code = store.regionCode(index);
+        if (code != StateNormalizer.NO_STATE) {
+            stateCounts.merge(store.regions().name(code), 1L, Long::sum);
+        }
+    }
+
+    // Сборщик для Stream<Earthquake>, в том числе параллельного
+    public static Collector<Earthquake, EarthquakeStatistics, EarthquakeStatistics> collector() {
+        return Collector.of(EarthquakeStatistics::new, EarthquakeStatistics::accept, EarthquakeStatistics::combine);
+    }
+
+    // Добавляет результаты другого накопителя к этому
+    public EarthquakeStatistics combine(EarthquakeStatistics other) {
+        total += other.total;
+        withTime += other.withTime;
+        magnitudeStats.combine(other.magnitudeStats);
+        depthStats.combine(other.depthStats);
+        oldest = Math.min(oldest, other.oldest);
+        newest = Math.max(newest, other.newest);
+        other.stateCounts.forEach((state, count) -> stateCounts.merge(state, count, Long::sum));
+        return this;
+    }
+
+    private void record(double magnitude, double depth, long time) {
+        total++;
+        magnitudeStats.accept(magnitude);
+
+        if (depth > 0) {
+            depthStats.accept(depth);
+        }
+
+        if (time != EarthquakeStore.NO_TIME) {
+            withTime++;
+            oldest = Math.min(oldest, time);
+            newest = Math.max(newest, time);
+        }
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long getWithTime() {
+        return withTime;
+    }
+
+    // Счетчики по нормализованным штатам, только для чтения
+    Map<String, Long> stateCounts() {
+        return Collections.unmodifiableMap(stateCounts);
+    }
+
+    // Результат в том же виде, что и EarthquakeAnalyzer.getStatistics()
+    public Map<String, Object> toMap() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+
+        stats.put("Всего землетрясений", total);
+
+        if (total > 0) {
+            // Самые частые штаты
+            String topState = stateCounts.entrySet().stream()
+                    .max(Map.Entry.comparingByValue())
+                    .map(Map.Entry::getKey)
+                    .orElse("Нет данных");
+
+            stats.put("Средняя магнитуда", magnitudeStats.getAverage());
+            stats.put("Максимальная магнитуда", magnitudeStats.getMax());
+            stats.put("Минимальная магнитуда", magnitudeStats.getMin());
+            stats.put("Средняя глубина (м)", depthStats.getCount() > 0 ? depthStats.getAverage() : 0);
+            stats.put("Максимальная глубина (м)", depthStats.getCount() > 0 ? depthStats.getMax() : 0);
+            stats.put("С временем", withTime);
+            stats.put("Без времени", total - withTime);
+            stats.put("Процент с временем", String.format("%.1f%%", (withTime * 100.0 / total)));
+            stats.put("Уникальных штатов", stateCounts.size());
+            stats.put("Самый частый штат", topState);
+
+            // Диапазон годов
+            if (withTime > 0) {
+                stats.put("Период данных",
+                        EarthquakeStore.yearOf(oldest) + " - " + EarthquakeStore.yearOf(newest));
+            }
+        }
+
+        return stats;
+    }
+}
@@ -0,0 +1,308 @@
+package models;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+// Колоночное хранилище землетрясений на примитивных массивах.
+// Вместо объекта на каждое событие (строки id, типа магнитуды, штата и LocalDateTime)
+// хранятся отдельные колонки: магнитуда и глубина в double[], время в long[]
+// (миллисекунды от эпохи, время трактуется как UTC), штат и тип магнитуды - коды
+// словарей, идентификаторы - в общем пуле символов. Объекты Earthquake
+// создаются только по запросу через get()
+public class EarthquakeStore implements EventColumns {
+    // Значение колонки времени для событий без времени
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    // Метка еще не нормализованного штата в stateToRegion
+    private static final int UNKNOWN_REGION = -2;
+
+    private int size;
+    private double[] magnitudes = new double[INITIAL_CAPACITY];
+    private double[] depths = new double[INITIAL_CAPACITY];
+    private long[] times = new long[INITIAL_CAPACITY];
+    private int[] stateCodes = new int[INITIAL_CAPACITY];
+    private int[] magnitudeTypeCodes = new int[INITIAL_CAPACITY];
+    // Код нормализованного штата, присваивается при добавлении
+    private int[] regionCodes = new int[INITIAL_CAPACITY];
+    // Соответствие кода исходной строки штата нормализованному коду
+    private int[] stateToRegion = newStateToRegion(64);
+
+    // Пул идентификаторов: символы всех id подряд, idEnds[i] - конец i-го id
+    private char[] idChars = new char[INITIAL_CAPACITY * 12];
+    private int idLength;
+    private int[] idEnds = new int[INITIAL_CAPACITY];
+    private final BitSet nullIds = new BitSet();
+
+    // Минимальное и максимальное время, NO_TIME если событий со временем нет
+    private long minTime = NO_TIME;
+    private long maxTime = NO_TIME;
+
+    private final StringDictionary states = new StringDictionary();
+    private final StringDictionary magnitudeTypes = new StringDictionary();
+    private final StateNormalizer regions = new StateNormalizer();
+
+    // Хранилище из готовых колонок (например, из снимка на диске) без создания
+    // объектов событий. Массивы не копируются и переходят во владение хранилища;
+    // states и magnitudeTypes - значения словарей в порядке их кодов.
+    // Нормализованные коды штатов восстанавливаются в том же порядке, что и при add()
+    public static EarthquakeStore fromColumns(int size, double[] magnitudes, double[] depths, long[] times,
+                                              int[] stateCodes, int[] magnitudeTypeCodes,
+                                              char[] idChars, int[] idEnds, BitSet nullIds,
+                                              List<String> states, List<String> magnitudeTypes) {
+        EarthquakeStore store = new EarthquakeStore();
+        for (String state : states) {
+            store.states.encode(state);
+        }
+        for (String magnitudeType : magnitudeTypes) {
+            store.magnitudeTypes.encode(magnitudeType);
+        }
+
+        store.size = size;
+        store.magnitudes = magnitudes;
+        store.depths = depths;
+        store.times = times;
+        store.stateCodes = stateCodes;
+        store.magnitudeTypeCodes = magnitudeTypeCodes;
+        store.idChars = idChars;
+        store.idLength = size > 0 ? idEnds[size - 1] : 0;
+        store.idEnds = idEnds;
+        store.nullIds.or(nullIds);
+        store.stateToRegion = newStateToRegion(Math.max(64, states.size()));
+        store.regionCodes = new int[size];
+
+        for (int i = 0; i < size; i++) {
+            long time = times[i];
+            if (time != NO_TIME) {
+                store.minTime = store.minTime == NO_TIME ? time : Math.min(store.minTime, time);
+                store.maxTime = store.maxTime == NO_TIME ? time : Math.max(store.maxTime, time);
+            }
+            int stateCode = stateCodes[i];
+            store.regionCodes[i] = store.regionOf(stateCode, store.states.decode(stateCode));
+        }
+        return store;
+    }
+
+    public int add(Earthquake eq) {
+        ensureCapacity(size + 1);
+
+        int index = size;
+        magnitudes[index] = eq.getMagnitude();
+        depths[index] = eq.getDepth();
+        long time = eq.getTime() != null ? toEpochMillis(eq.getTime()) : NO_TIME;
+        times[index] = time;
+        if (time != NO_TIME) {
+            minTime = minTime == NO_TIME ? time : Math.min(minTime, time);
+            maxTime = maxTime == NO_TIME ? time : Math.max(maxTime, time);
+        }
+        int stateCode = states.encode(eq.getState());
+        stateCodes[index] = stateCode;
+        regionCodes[index] = regionOf(stateCode, eq.getState());
+        magnitudeTypeCodes[index] = magnitudeTypes.encode(eq.getMagnitudeType());
+
+        String id = eq.getId();
+        if (id == null) {
+            nullIds.set(index);
+        } else {
+            if (idLength + id.length() > idChars.length) {
+                idChars = Arrays.copyOf(idChars, Math.max(idChars.length * 2, idLength + id.length()));
+            }
+            id.getChars(0, id.length(), idChars, idLength);
+            idLength += id.length();
+        }
+        idEnds[index] = idLength;
+
+        size++;
+        return index;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public double magnitude(int index) {
+        return magnitudes[index];
+    }
+
+    @Override
+    public double depth(int index) {
+        return depths[index];
+    }
+
+    @Override
+    public long time(int index) {
+        return times[index];
+    }
+
+    @Override
+    public boolean hasTime(int index) {
+        return times[index] != NO_TIME;
+    }
+
+    @Override
+    public long minTime() {
+        return minTime;
+    }
+
+    @Override
+    public long maxTime() {
+        return maxTime;
+    }
+
+    public int stateCode(int index) {
+        return stateCodes[index];
+    }
+
+    @Override
+    public int regionCode(int index) {
+        return regionCodes[index];
+    }
+
+    public int magnitudeTypeCode(int index) {
+        return magnitudeTypeCodes[index];
+    }
+
+    public String state(int index) {
+        return states.decode(stateCodes[index]);
+    }
+
+    public boolean hasId(int index) {
+        return !nullIds.get(index);
+    }
+
+    public String id(int index) {
+        if (nullIds.get(index)) {
+            return null;
+        }
+        int start = index == 0 ? 0 : idEnds[index - 1];
+        return new String(idChars, start, idEnds[index] - start);
+    }
+
+    public StringDictionary states() {
+        return states;
+    }
+
+    public StringDictionary magnitudeTypes() {
+        return magnitudeTypes;
+    }
+
+    @Override
+    public StateNormalizer regions() {
+        return regions;
+    }
+
+    // Восстанавливает объект события по индексу
+    @Override
+    public Earthquake get(int index) {
+        long time = times[index];
+        return new Earthquake(
+                id(index),
+                depths[index],
+                magnitudeTypes.decode(magnitudeTypeCodes[index]),
+                magnitudes[index],
+                states.decode(stateCodes[index]),
+                time != NO_TIME ? toLocalDateTime(time) : null);
+    }
+
+    // Представление хранилища в виде списка только для чтения
+    public List<Earthquake> asList() {
+        return new AbstractList<Earthquake>() {
+            @Override
+            public Earthquake get(int index) {
+                if (index < 0 || index >= size) {
+                    throw new IndexOutOfBoundsException("Индекс " + index + ", размер " + size);
+                }
+                return EarthquakeStore.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    public static long toEpochMillis(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1000 + time.getNano() / 1_000_000;
+    }
+
+    public static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochMillis, 1000),
+                Math.floorMod(epochMillis, 1000) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    // Год по миллисекундам без создания объектов даты
+    public static int yearOf(long epochMillis) {
+        long civil = civilFromDays(Math.floorDiv(epochMillis, MILLIS_PER_DAY));
+        return (int) (civil >> 4);
+    }
+
+    // Месяц (1-12) по миллисекундам без создания объектов даты
+    public static int monthOf(long epochMillis) {
+        long civil = civilFromDays(Math.floorDiv(epochMillis, MILLIS_PER_DAY));
+        return (int) (civil & 0xF);
+    }
+
+    // Перевод номера дня от эпохи в год и месяц григорианского календаря
+    // (алгоритм civil_from_days Говарда Хиннанта). Результат: год << 4 | месяц
+    private static long civilFromDays(long days) {
+        long z = days + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        long dayOfEra = z - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        long month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return (year << 4) | month;
+    }
+
+    // Нормализация выполняется один раз на каждую новую исходную строку штата,
+    // для уже встречавшихся - только чтение из массива
+    private int regionOf(int stateCode, String state) {
+        if (stateCode == StringDictionary.NULL_CODE) {
+            return StateNormalizer.NO_STATE;
+        }
+        if (stateCode >= stateToRegion.length) {
+            int oldLength = stateToRegion.length;
+            stateToRegion = Arrays.copyOf(stateToRegion, Math.max(stateCode + 1, oldLength * 2));
+            Arrays.fill(stateToRegion, oldLength, stateToRegion.length, UNKNOWN_REGION);
+        }
+        if (stateToRegion[stateCode] == UNKNOWN_REGION) {
+            stateToRegion[stateCode] = regions.encode(state);
+        }
+        return stateToRegion[stateCode];
+    }
+
+    private static int[] newStateToRegion(int length) {
+        int[] mapping = new int[length];
+        Arrays.fill(mapping, UNKNOWN_REGION);
+        return mapping;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= magnitudes.length) {
+            return;
+        }
+        int capacity = Math.max(required, magnitudes.length * 2);
+        magnitudes = Arrays.copyOf(magnitudes, capacity);
+        depths = Arrays.copyOf(depths, capacity);
+        times = Arrays.copyOf(times, capacity);
+        stateCodes = Arrays.copyOf(stateCodes, capacity);
+        magnitudeTypeCodes = Arrays.copyOf(magnitudeTypeCodes, capacity);
+        regionCodes = Arrays.copyOf(regionCodes, capacity);
+        idEnds = Arrays.copyOf(idEnds, capacity);
+    }
+}
@@ -0,0 +1,91 @@
+package models;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class EarthquakeStoreTest {
+
+    public static void main(String[] args) {
+        System.out.println("=== Запуск тестов EarthquakeStore ===");
+
+        try {
+            testAddAndGet();
+            testDictionaries();
+            testRegionCodes();
+            testYearAndMonth();
+            System.out.println("✓ Все тесты EarthquakeStore пройдены успешно!");
+        } catch (AssertionError e) {
+            System.err.println("✗ Тест провален: " + e.getMessage());
+        }
+    }
+
+    private static void testAddAndGet() {
+        EarthquakeStore store = new EarthquakeStore();
+        LocalDateTime time = LocalDateTime.of(2009, 7, 1, 13, 44, 43, 380_000_000);
+        store.add(new Earthquake("usp000gyu4", 5000, "md", 2.8, "New Jersey", time));
+        store.add(new Earthquake("usp000gyxs", 11500, "mblg", 3.1, "West Virginia", null));
+
+        assert store.size() == 2 : "Размер хранилища должен быть 2";
+        assert store.magnitude(1) == 3.1 : "Магнитуда не совпадает";
+        assert !store.hasTime(1) : "У второго события нет времени";
+
+        Earthquake first = store.get(0);
+        assert first.getId().equals("usp000gyu4") : "ID не совпадает";
+        assert first.getDepth() == 5000 : "Глубина не совпадает";
+        assert first.getMagnitudeType().equals("md") : "Тип магнитуды не совпадает";
+        assert first.getState().equals("New Jersey") : "Штат не совпадает";
+        assert first.getTime().equals(time) : "Время не совпадает: " + first.getTime();
+
+        List<Earthquake> list = store.asList();
+        assert list.size() == 2 : "Размер списка должен быть 2";
+        assert list.get(1).getId().equals("usp000gyxs") : "ID второго события не совпадает";
+        assert list.get(1).getTime() == null : "Время второго события должно быть null";
+
+        System.out.println("  ✓ testAddAndGet пройден");
+    }
+
+    private static void testDictionaries() {
+        EarthquakeStore store = new EarthquakeStore();
+        for (int i = 0; i < 5000; i++) {
+            store.add(new Earthquake("id" + i, i, i % 2 == 0 ? "md" : "ml", 2.0, i % 3 == 0 ? "Ohio" : "Virginia", null));
+        }
+
+        assert store.states().size() == 2 : "Должно быть 2 уникальных штата";
+        assert store.magnitudeTypes().size() == 2 : "Должно быть 2 типа магнитуды";
+        assert store.id(4999).equals("id4999") : "ID из пула не совпадает";
+        assert store.state(3).equals("Ohio") : "Штат из словаря не совпадает";
+
+        System.out.println("  ✓ testDictionaries пройден");
+    }
+
+    private static void testRegionCodes() {
+        EarthquakeStore store = new EarthquakeStore();
+        store.add(new Earthquake("a", 1, "md", 2.0, "NEW YORK", null));
+        store.add(new Earthquake("b", 1, "md", 2.0, "new york, USA", null));
+        store.add(new Earthquake("c", 1, "md", 2.0, "Ohio", null));
+        store.add(new Earthquake("d", 1, "md", 2.0, "", null));
+        store.add(new Earthquake("e", 1, "md", 2.0, "NEW YORK", null));
+
+        assert store.states().size() == 4 : "Исходных строк штатов должно быть 4";
+        assert store.regions().size() == 2 : "Нормализованных штатов должно быть 2";
+        assert store.regionCode(0) == store.regionCode(1) : "NEW YORK и new york, USA - один штат";
+        assert store.regionCode(0) == store.regionCode(4) : "Повторная строка должна получить тот же код";
+        assert store.regionCode(3) == StateNormalizer.NO_STATE : "Пустой штат не должен получать код";
+        assert "New York".equals(store.regions().name(store.regionCode(0))) : "Неверное каноническое имя";
+
+        System.out.println("  ✓ testRegionCodes пройден");
+    }
+
+    private static void testYearAndMonth() {
+        LocalDateTime time = LocalDateTime.of(1899, 1, 1, 0, 0);
+        while (time.getYear() < 2101) {
+            long millis = EarthquakeStore.toEpochMillis(time);
+            assert EarthquakeStore.yearOf(millis) == time.getYear() : "Год не совпадает для " + time;
+            assert EarthquakeStore.monthOf(millis) == time.getMonthValue() : "Месяц не совпадает для " + time;
+            assert EarthquakeStore.toLocalDateTime(millis).equals(time) : "Время не восстанавливается для " + time;
+            time = time.plusHours(37);
+        }
+
+        System.out.println("  ✓ testYearAndMonth пройден");
+    }
+}
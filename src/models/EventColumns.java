@@ -0,0 +1,36 @@
+package models;
+
+// Колонки событий, по которым работает анализатор. Реализации: EarthquakeStore
+// (массивы в куче, с добавлением событий) и storage.MappedEventStore (колонки
+// в отображенных в память файлах, только чтение). Индексы событий - от 0 до size() - 1
+public interface EventColumns {
+
+    int size();
+
+    double magnitude(int index);
+
+    double depth(int index);
+
+    // Миллисекунды от эпохи (UTC) или EarthquakeStore.NO_TIME
+    long time(int index);
+
+    long minTime();
+
+    long maxTime();
+
+    // Код нормализованного штата в regions() или StateNormalizer.NO_STATE
+    int regionCode(int index);
+
+    StateNormalizer regions();
+
+    // Восстанавливает объект события по индексу
+    Earthquake get(int index);
+
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    default boolean hasTime(int index) {
+        return time(index) != EarthquakeStore.NO_TIME;
+    }
+}
@@ -0,0 +1,43 @@
+package models;
+
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+
+// Задача fork/join над диапазоном индексов хранилища: диапазон делится пополам,
+// пока не станет не больше порога, листья считаются последовательно,
+// а результаты сливаются слева направо, поэтому порядок слияния детерминирован
+class RangeTask<T> extends RecursiveTask<T> {
+    private static final long serialVersionUID = 1L;
+
+    interface RangeFunction<T> {
+        T apply(int from, int to);
+    }
+
+    private final RangeFunction<T> leaf;
+    private final BinaryOperator<T> merge;
+    private final int from;
+    private final int to;
+    private final int threshold;
+
+    RangeTask(RangeFunction<T> leaf, BinaryOperator<T> merge, int from, int to, int threshold) {
+        this.leaf = leaf;
+        this.merge = merge;
+        this.from = from;
+        this.to = to;
+        this.threshold = Math.max(1, threshold);
+    }
+
+    @Override
+    protected T compute() {
+        if (to - from <= threshold) {
+            return leaf.apply(from, to);
+        }
+
+        int middle = (from + to) >>> 1;
+        RangeTask<T> left = new RangeTask<>(leaf, merge, from, middle, threshold);
+        RangeTask<T> right = new RangeTask<>(leaf, merge, middle, to, threshold);
+        left.fork();
+        T rightResult = right.compute();
+        return merge.apply(left.join(), rightResult);
+    }
+}
@@ -0,0 +1,141 @@
+package models;
+
+import java.time.LocalDateTime;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+// Инвертированный индекс "регион -> события". Для каждого нормализованного
+// кода региона хранится список порядковых номеров событий хранилища,
+// упорядоченный по времени (события без времени - в начале списка).
+// Выборка событий региона, в том числе за период, не просматривает остальные
+// события: период находится двоичным поиском по времени внутри списка.
+// Индекс неизменяем и отражает хранилище на момент построения
+public class RegionIndex {
+    private final EventColumns store;
+    private final int size;
+    // Все списки подряд в одном массиве: события региона code - [offsets[code], offsets[code + 1])
+    private final int[] postings;
+    private final int[] offsets;
+    // Время событий в порядке postings - для двоичного поиска без обращения к хранилищу
+    private final long[] times;
+
+    public RegionIndex(EventColumns store) {
+        this(store, new TimeIndex(store));
+    }
+
+    // Построение по готовому индексу времени того же хранилища: события
+    // устойчиво раскладываются по регионам в порядке времени, поэтому списки
+    // регионов получаются отсортированными без отдельной сортировки
+    public RegionIndex(EventColumns store, TimeIndex timeIndex) {
+        this.store = store;
+        this.size = timeIndex.size();
+        int regionCount = store.regions().size();
+
+        offsets = new int[regionCount + 1];
+        for (int i = 0; i < size; i++) {
+            int code = store.regionCode(i);
+            if (code != StateNormalizer.NO_STATE) {
+                offsets[code + 1]++;
+            }
+        }
+        for (int code = 0; code < regionCount; code++) {
+            offsets[code + 1] += offsets[code];
+        }
+
+        postings = new int[offsets[regionCount]];
+        times = new long[postings.length];
+        int[] next = Arrays.copyOf(offsets, regionCount);
+        for (int i = 0; i < size; i++) {
+            int index = timeIndex.eventAt(i);
+            int code = store.regionCode(index);
+            if (code != StateNormalizer.NO_STATE) {
+                int position = next[code]++;
+                postings[position] = index;
+                times[position] = store.time(index);
+            }
+        }
+    }
+
+    // Количество событий хранилища на момент построения
+    public int size() {
+        return size;
+    }
+
+    // Код региона по исходному или нормализованному названию, NO_STATE если его нет
+    public int codeOf(String region) {
+        if (region == null || region.isEmpty()) {
+            return StateNormalizer.NO_STATE;
+        }
+        return store.regions().codeOf(StateNormalizer.normalize(region));
+    }
+
+    public int count(int regionCode) {
+        if (!isKnown(regionCode)) {
+            return 0;
+        }
+        return offsets[regionCode + 1] - offsets[regionCode];
+    }
+
+    // Номера событий региона по возрастанию времени
+    public int[] eventIndices(int regionCode) {
+        if (!isKnown(regionCode)) {
+            return new int[0];
+        }
+        return Arrays.copyOfRange(postings, offsets[regionCode], offsets[regionCode + 1]);
+    }
+
+    // Номера событий региона со временем в [fromMillis, toMillis)
+    public int[] eventIndices(int regionCode, long fromMillis, long toMillis) {
+        if (!isKnown(regionCode) || fromMillis >= toMillis) {
+            return new int[0];
+        }
+        int from = lowerBound(regionCode, Math.max(fromMillis, EarthquakeStore.NO_TIME + 1));
+        int to = lowerBound(regionCode, toMillis);
+        return Arrays.copyOfRange(postings, from, to);
+    }
+
+    // События региона по возрастанию времени; объекты создаются при обращении
+    public List<Earthquake> getEarthquakes(String region) {
+        return asEarthquakes(eventIndices(codeOf(region)));
+    }
+
+    // События региона за период [from, to)
+    public List<Earthquake> getEarthquakes(String region, LocalDateTime from, LocalDateTime to) {
+        return asEarthquakes(eventIndices(codeOf(region),
+                EarthquakeStore.toEpochMillis(from), EarthquakeStore.toEpochMillis(to)));
+    }
+
+    private List<Earthquake> asEarthquakes(int[] indices) {
+        return new AbstractList<Earthquake>() {
+            @Override
+            public Earthquake get(int index) {
+                return store.get(indices[index]);
+            }
+
+            @Override
+            public int size() {
+                return indices.length;
+            }
+        };
+    }
+
+    private boolean isKnown(int regionCode) {
+        return regionCode >= 0 && regionCode < offsets.length - 1;
+    }
+
+    // Первая позиция в списке региона со временем >= millis
+    private int lowerBound(int regionCode, long millis) {
+        int low = offsets[regionCode];
+        int high = offsets[regionCode + 1];
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] < millis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
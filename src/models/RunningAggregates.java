@@ -0,0 +1,67 @@
+package models;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Агрегаты анализатора, которые обновляются при каждом добавлении события:
+// общая статистика и счетчики по штатам (EarthquakeStatistics), корзины магнитуд
+// и глубин, счетчики по годам и месяцам. Добавление - O(1), чтение - O(корзин).
+// Границы корзин те же, что и в полном пересчете, поэтому результаты совпадают
+class RunningAggregates {
+    private final EventColumns store;
+    private final EarthquakeStatistics summary = new EarthquakeStatistics();
+    private final long[] magnitudeCounts;
+    private final long[] depthCounts;
+    // Год -> счетчики по месяцам, индекс 1-12
+    private final Map<Integer, long[]> monthCounts = new HashMap<>();
+
+    RunningAggregates(EventColumns store, int magnitudeBuckets, int depthBuckets) {
+        this.store = store;
+        this.magnitudeCounts = new long[magnitudeBuckets];
+        this.depthCounts = new long[depthBuckets];
+    }
+
+    // Учитывает событие хранилища с индексом index
+    void add(int index) {
+        summary.add(store, index);
+
+        magnitudeCounts[EarthquakeAnalyzer.magnitudeBucket(store.magnitude(index))]++;
+        double depth = store.depth(index);
+        if (depth > 0) {
+            depthCounts[EarthquakeAnalyzer.depthBucket(depth)]++;
+        }
+
+        long time = store.time(index);
+        if (time != EarthquakeStore.NO_TIME) {
+            monthCounts.computeIfAbsent(EarthquakeStore.yearOf(time), year -> new long[13])
+                    [EarthquakeStore.monthOf(time)]++;
+        }
+    }
+
+    // Копия общей статистики: внутренний накопитель не отдается наружу
+    EarthquakeStatistics summary() {
+        return new EarthquakeStatistics().combine(summary);
+    }
+
+    Map<String, Long> stateCounts() {
+        return summary.stateCounts();
+    }
+
+    long[] magnitudeCounts() {
+        return magnitudeCounts.clone();
+    }
+
+    long[] depthCounts() {
+        return depthCounts.clone();
+    }
+
+    Map<Integer, long[]> monthCounts() {
+        return monthCounts;
+    }
+
+    // Счетчики по месяцам года, индекс 1-12
+    long[] monthCounts(int year) {
+        long[] counts = monthCounts.get(year);
+        return counts != null ? counts.clone() : new long[13];
+    }
+}
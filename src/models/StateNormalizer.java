@@ -0,0 +1,87 @@
+package models;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+// Словарь нормализованных штатов. Каждая исходная строка штата ("NEW YORK",
+// "new york, USA", ...) нормализуется один раз - при первой встрече - и получает
+// целочисленный код канонического имени. Дальше группировка по штатам сводится
+// к гистограмме по int-кодам без работы со строками. Код пустого штата - -1
+public class StateNormalizer {
+    public static final int NO_STATE = -1;
+
+    private final Map<String, Integer> rawCodes = new HashMap<>();
+    private final StringDictionary names = new StringDictionary();
+
+    // Канонический код для исходной строки штата
+    public int encode(String rawState) {
+        if (rawState == null || rawState.isEmpty()) {
+            return NO_STATE;
+        }
+        Integer code = rawCodes.get(rawState);
+        if (code == null) {
+            code = names.encode(normalize(rawState));
+            rawCodes.put(rawState, code);
+        }
+        return code;
+    }
+
+    public String name(int code) {
+        return code == NO_STATE ? null : names.decode(code);
+    }
+
+    // Код по каноническому имени, NO_STATE если такого штата нет
+    public int codeOf(String name) {
+        int code = names.lookup(name);
+        return code == StringDictionary.NULL_CODE ? NO_STATE : code;
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    // Полная нормализация исходной строки: берется часть до запятой
+    public static String normalize(String rawState) {
+        int comma = rawState.indexOf(',');
+        return normalizeStateName((comma >= 0 ? rawState.substring(0, comma) : rawState).trim());
+    }
+
+    // Нормализация имени штата
+    private static String normalizeStateName(String stateName) {
+        if (stateName == null || stateName.isEmpty()) {
+            return "";
+        }
+
+        String lower = stateName.toLowerCase().trim();
+
+        // Специальная обработка для составных названий штатов
+        if (lower.contains("new ")) {
+            // Для штатов с "New" - первая буква каждого слова заглавная
+            return Arrays.stream(lower.split("\\s+"))
+                    .map(word -> {
+                        if (word.length() > 0) {
+                            return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+                        }
+                        return word;
+                    })
+                    .collect(Collectors.joining(" "));
+        } else if (lower.contains("north ") || lower.contains("south ") ||
+                lower.contains("west ") || lower.contains("east ")) {
+            // Для направлений (North, South, etc.)
+            return Arrays.stream(lower.split("\\s+"))
+                    .map(word -> {
+                        if (word.length() > 0) {
+                            return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+                        }
+                        return word;
+                    })
+                    .collect(Collectors.joining(" "));
+        } else {
+            // Для обычных штатов - первая буква заглавная, остальные строчные
+            if (lower.length() > 0) {
+                return Character.toUpperCase(lower.charAt(0)) + lower.substring(1);
+            }
+            return lower;
+        }
+    }
+}
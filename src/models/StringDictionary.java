@@ -0,0 +1,45 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Словарное кодирование строк: каждой уникальной строке присваивается
+// целочисленный код, сама строка хранится один раз. Код null - это -1
+public class StringDictionary {
+    public static final int NULL_CODE = -1;
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    public int encode(String value) {
+        if (value == null) {
+            return NULL_CODE;
+        }
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = values.size();
+            codes.put(value, code);
+            values.add(value);
+        }
+        return code;
+    }
+
+    // Код без добавления новой строки, NULL_CODE если строки нет в словаре
+    public int lookup(String value) {
+        if (value == null) {
+            return NULL_CODE;
+        }
+        Integer code = codes.get(value);
+        return code != null ? code : NULL_CODE;
+    }
+
+    public String decode(int code) {
+        return code == NULL_CODE ? null : values.get(code);
+    }
+
+    public int size() {
+        return values.size();
+    }
+}
@@ -0,0 +1,215 @@
+package models;
+
+import java.time.LocalDateTime;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+// Индекс событий по времени: порядковые номера событий хранилища, упорядоченные
+// по времени (события без времени - в начале), и границы месяцев в этом порядке.
+// События за период находятся двоичным поиском, количество событий за месяц
+// и за год, а также минимальное и максимальное время - за O(1).
+// Индекс неизменяем и отражает хранилище на момент построения
+public class TimeIndex {
+    private final EventColumns store;
+    private final int size;
+    // Номера событий по возрастанию времени, сортировка устойчивая
+    private final int[] order;
+    // Время событий в порядке order
+    private final long[] times;
+    // Позиция первого события со временем
+    private final int firstTimed;
+    // Месяцы нумеруются как year * 12 + (month - 1) начиная с firstMonth;
+    // события месяца k - [monthOffsets[k], monthOffsets[k + 1])
+    private final int firstMonth;
+    private final int[] monthOffsets;
+
+    public TimeIndex(EventColumns store) {
+        this.store = store;
+        this.size = store.size();
+        this.order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        sortByTime(store, order);
+
+        times = new long[size];
+        int timed = size;
+        for (int i = 0; i < size; i++) {
+            times[i] = store.time(order[i]);
+            if (timed == size && times[i] != EarthquakeStore.NO_TIME) {
+                timed = i;
+            }
+        }
+        firstTimed = timed;
+
+        if (firstTimed == size) {
+            firstMonth = 0;
+            monthOffsets = new int[]{size};
+            return;
+        }
+
+        // Время упорядочено, поэтому номер месяца не убывает - границы
+        // заполняются за один проход
+        firstMonth = monthKey(times[firstTimed]);
+        int months = monthKey(times[size - 1]) - firstMonth + 1;
+        monthOffsets = new int[months + 1];
+        int month = 0;
+        monthOffsets[0] = firstTimed;
+        for (int i = firstTimed; i < size; i++) {
+            int key = monthKey(times[i]) - firstMonth;
+            while (month < key) {
+                monthOffsets[++month] = i;
+            }
+        }
+        while (month < months) {
+            monthOffsets[++month] = size;
+        }
+    }
+
+    // Количество событий хранилища на момент построения
+    public int size() {
+        return size;
+    }
+
+    public int countWithTime() {
+        return size - firstTimed;
+    }
+
+    // Минимальное и максимальное время, NO_TIME если событий со временем нет
+    public long minTime() {
+        return firstTimed < size ? times[firstTimed] : EarthquakeStore.NO_TIME;
+    }
+
+    public long maxTime() {
+        return firstTimed < size ? times[size - 1] : EarthquakeStore.NO_TIME;
+    }
+
+    // Номер события в хранилище по позиции в порядке времени
+    int eventAt(int position) {
+        return order[position];
+    }
+
+    // Количество событий со временем в [fromMillis, toMillis)
+    public int count(long fromMillis, long toMillis) {
+        if (fromMillis >= toMillis) {
+            return 0;
+        }
+        return lowerBound(toMillis) - lowerBound(fromMillis);
+    }
+
+    // Номера событий со временем в [fromMillis, toMillis) по возрастанию времени
+    public int[] eventIndices(long fromMillis, long toMillis) {
+        if (fromMillis >= toMillis) {
+            return new int[0];
+        }
+        return Arrays.copyOfRange(order, lowerBound(fromMillis), lowerBound(toMillis));
+    }
+
+    // События за период [from, to); объекты создаются при обращении
+    public List<Earthquake> getEarthquakes(LocalDateTime from, LocalDateTime to) {
+        int[] indices = eventIndices(EarthquakeStore.toEpochMillis(from), EarthquakeStore.toEpochMillis(to));
+        return new AbstractList<Earthquake>() {
+            @Override
+            public Earthquake get(int index) {
+                return store.get(indices[index]);
+            }
+
+            @Override
+            public int size() {
+                return indices.length;
+            }
+        };
+    }
+
+    public int countInMonth(int year, int month) {
+        int k = year * 12 + (month - 1) - firstMonth;
+        if (k < 0 || k >= monthOffsets.length - 1) {
+            return 0;
+        }
+        return monthOffsets[k + 1] - monthOffsets[k];
+    }
+
+    public int countInYear(int year) {
+        int from = clampMonth(year * 12 - firstMonth);
+        int to = clampMonth((year + 1) * 12 - firstMonth);
+        return monthOffsets[to] - monthOffsets[from];
+    }
+
+    // Первый и последний год с событиями; при отсутствии времени - 0
+    public int firstYear() {
+        return firstTimed < size ? EarthquakeStore.yearOf(times[firstTimed]) : 0;
+    }
+
+    public int lastYear() {
+        return firstTimed < size ? EarthquakeStore.yearOf(times[size - 1]) : 0;
+    }
+
+    private int clampMonth(int k) {
+        return Math.max(0, Math.min(k, monthOffsets.length - 1));
+    }
+
+    // Первая позиция среди событий со временем, где время >= millis
+    private int lowerBound(long millis) {
+        int low = firstTimed;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] < millis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int monthKey(long epochMillis) {
+        return EarthquakeStore.yearOf(epochMillis) * 12 + EarthquakeStore.monthOf(epochMillis) - 1;
+    }
+
+    // Устойчивая сортировка номеров событий по времени (слияниями снизу вверх,
+    // без упаковки в объекты). Для уже упорядоченных данных - один линейный проход
+    private static void sortByTime(EventColumns store, int[] indices) {
+        int n = indices.length;
+        if (isSortedByTime(store, indices)) {
+            return;
+        }
+
+        int[] source = indices;
+        int[] target = new int[n];
+        for (int width = 1; width < n; width *= 2) {
+            for (int left = 0; left < n; left += 2 * width) {
+                int mid = Math.min(left + width, n);
+                int right = Math.min(left + 2 * width, n);
+                int i = left;
+                int j = mid;
+                int k = left;
+                while (i < mid && j < right) {
+                    target[k++] = store.time(source[j]) < store.time(source[i]) ? source[j++] : source[i++];
+                }
+                while (i < mid) {
+                    target[k++] = source[i++];
+                }
+                while (j < right) {
+                    target[k++] = source[j++];
+                }
+            }
+            int[] swap = source;
+            source = target;
+            target = swap;
+        }
+        if (source != indices) {
+            System.arraycopy(source, 0, indices, 0, n);
+        }
+    }
+
+    private static boolean isSortedByTime(EventColumns store, int[] indices) {
+        for (int i = 1; i < indices.length; i++) {
+            if (store.time(indices[i]) < store.time(indices[i - 1])) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,123 @@
+package models;
+
+import java.util.Arrays;
+
+// Отбор k лучших событий по числовому ключу ограниченной min-кучей за O(n log k).
+// В корне кучи лежит худший из отобранных, поэтому новый кандидат сравнивается
+// только с ним. Порядок полный: больший ключ лучше, при равных ключах лучше
+// меньший индекс - так результат совпадает с устойчивой сортировкой по убыванию
+// и не зависит от того, как данные были разбиты между потоками
+public class TopK {
+    private final int capacity;
+    private final int[] indices;
+    private final double[] keys;
+    private int size;
+
+    public TopK(int capacity) {
+        this.capacity = Math.max(0, capacity);
+        this.indices = new int[this.capacity];
+        this.keys = new double[this.capacity];
+    }
+
+    public void offer(int index, double key) {
+        if (capacity == 0) {
+            return;
+        }
+        if (size < capacity) {
+            indices[size] = index;
+            keys[size] = key;
+            siftUp(size++);
+        } else if (isWorse(indices[0], keys[0], index, key)) {
+            indices[0] = index;
+            keys[0] = key;
+            siftDown(0);
+        }
+    }
+
+    // Добавляет кандидатов другого отбора (слияние результатов параллельных задач)
+    public TopK merge(TopK other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.indices[i], other.keys[i]);
+        }
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Индексы отобранных событий от лучшего к худшему
+    public int[] sortedIndices() {
+        int[] heapIndices = Arrays.copyOf(indices, size);
+        double[] heapKeys = Arrays.copyOf(keys, size);
+        TopK copy = new TopK(heapIndices, heapKeys, size);
+
+        int[] result = new int[size];
+        for (int i = size - 1; i >= 0; i--) {
+            result[i] = copy.indices[0];
+            copy.removeRoot();
+        }
+        return result;
+    }
+
+    private TopK(int[] indices, double[] keys, int size) {
+        this.capacity = indices.length;
+        this.indices = indices;
+        this.keys = keys;
+        this.size = size;
+    }
+
+    // true, если (indexA, keyA) хуже (indexB, keyB)
+    private static boolean isWorse(int indexA, double keyA, int indexB, double keyB) {
+        int cmp = Double.compare(keyA, keyB);
+        return cmp < 0 || (cmp == 0 && indexA > indexB);
+    }
+
+    private void removeRoot() {
+        size--;
+        if (size > 0) {
+            indices[0] = indices[size];
+            keys[0] = keys[size];
+            siftDown(0);
+        }
+    }
+
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!isWorse(indices[position], keys[position], indices[parent], keys[parent])) {
+                break;
+            }
+            swap(position, parent);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        while (true) {
+            int left = 2 * position + 1;
+            if (left >= size) {
+                break;
+            }
+            int worst = left;
+            int right = left + 1;
+            if (right < size && isWorse(indices[right], keys[right], indices[left], keys[left])) {
+                worst = right;
+            }
+            if (!isWorse(indices[worst], keys[worst], indices[position], keys[position])) {
+                break;
+            }
+            swap(position, worst);
+            position = worst;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int index = indices[a];
+        indices[a] = indices[b];
+        indices[b] = index;
+        double key = keys[a];
+        keys[a] = keys[b];
+        keys[b] = key;
+    }
+}
@@ -2,15 +2,46 @@ package parser;
 
 import models.Earthquake;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
 
 public class CSVReader {
+    // Границы размера фрагмента при параллельном чтении
+    private static final long MIN_CHUNK_SIZE = 1L << 20;
+    private static final long MAX_CHUNK_SIZE = 64L << 20;
+    // Фрагментов больше, чем потоков, чтобы потоки не простаивали на неровных фрагментах
+    private static final int CHUNKS_PER_THREAD = 4;
+    // Размер окна контрольной суммы для инкрементального чтения
+    private static final int CHECKSUM_WINDOW = 4096;
+
+    // Токенизатор переиспользуется между строками, поэтому свой у каждого потока
+    private final ThreadLocal<CSVTokenizer> tokenizers = ThreadLocal.withInitial(CSVTokenizer::new);
+    // Разборщик времени запоминает удачный формат файла, поэтому тоже свой у каждого потока
+    private final ThreadLocal<DateTimeParser> dateTimeParsers = ThreadLocal.withInitial(DateTimeParser::new);
+
     public List<Earthquake> readCSV(String filename) {
         List<Earthquake> earthquakes = new ArrayList<>();
+        readCSV(filename, earthquakes::add);
+        return earthquakes;
+    }
+
+    // Потоковое чтение: каждая строка передается в sink сразу после разбора,
+    // полный список землетрясений в памяти не накапливается
+    public long readCSV(String filename, Consumer<Earthquake> sink) {
+        long successCount = 0;
 
         try (BufferedReader br = new BufferedReader(
                 new InputStreamReader(new FileInputStream(filename), StandardCharsets.UTF_8))) {
@@ -25,7 +56,6 @@ public class CSVReader {
             }
 
             int lineNum = 1;
-            int successCount = 0;
             int errorCount = 0;
 
             String line; // Объявляем переменную здесь
@@ -34,7 +64,7 @@ public class CSVReader {
                 try {
                     Earthquake eq = parseLine(line);
                     if (eq != null) {
-                        earthquakes.add(eq);
+                        sink.accept(eq);
                         successCount++;
 
                     } else {
@@ -64,9 +94,329 @@ public class CSVReader {
             e.printStackTrace();
         }
 
+        return successCount;
+    }
+
+    public List<Earthquake> readCSVParallel(String filename) {
+        return readCSVParallel(filename, Runtime.getRuntime().availableProcessors());
+    }
+
+    // Параллельное чтение: файл отображается в память (FileChannel.map) фрагментами,
+    // границы которых выровнены по переводу строки, каждый фрагмент разбирается
+    // в своем потоке, а результаты склеиваются в порядке фрагментов - порядок
+    // строк совпадает с последовательным readCSV.
+    // Запятые внутри кавычек обрабатывает токенизатор; переводы строк внутри
+    // кавычек, как и в readCSV, не поддерживаются
+    public List<Earthquake> readCSVParallel(String filename, int threads) {
+        return readCSVParallel(filename, threads, 0);
+    }
+
+    // chunkSize = 0 - размер фрагмента выбирается по размеру файла
+    List<Earthquake> readCSVParallel(String filename, int threads, long chunkSize) {
+        List<Earthquake> earthquakes = new ArrayList<>();
+        int workers = Math.max(1, threads);
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            System.out.println("=== Начало параллельного чтения CSV файла (потоков: " + workers + ") ===");
+
+            long size = channel.size();
+            long dataStart = findLineEnd(channel, 0, size);
+            String header = readHeader(channel, dataStart);
+            if (!header.isEmpty()) {
+                System.out.println("Заголовок файла: " + header);
+                System.out.println("Колонки: " + Arrays.toString(header.split(",")));
+            }
+
+            if (chunkSize <= 0) {
+                chunkSize = Math.max(MIN_CHUNK_SIZE,
+                        Math.min(MAX_CHUNK_SIZE, (size - dataStart) / ((long) workers * CHUNKS_PER_THREAD) + 1));
+            }
+
+            // Режем файл на фрагменты по переводам строк
+            List<long[]> chunks = new ArrayList<>();
+            long start = dataStart;
+            while (start < size) {
+                long end = findLineEnd(channel, Math.min(size, start + chunkSize), size);
+                chunks.add(new long[]{start, end});
+                start = end;
+            }
+
+            AtomicInteger reportedErrors = new AtomicInteger();
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(workers, Math.max(1, chunks.size())));
+            try {
+                List<Future<ChunkResult>> futures = new ArrayList<>(chunks.size());
+                for (int i = 0; i < chunks.size(); i++) {
+                    long[] chunk = chunks.get(i);
+                    int chunkIndex = i;
+                    futures.add(executor.submit(() ->
+                            parseChunk(channel, chunk[0], chunk[1], chunkIndex, reportedErrors)));
+                }
+
+                int lineNum = 1;
+                int errorCount = 0;
+                for (Future<ChunkResult> future : futures) {
+                    ChunkResult result = future.get();
+                    earthquakes.addAll(result.earthquakes);
+                    lineNum += result.lineCount;
+                    errorCount += result.errorCount;
+                }
+
+                System.out.println("\n=== Результаты чтения ===");
+                System.out.println("Всего строк в файле: " + lineNum);
+                System.out.println("Успешно прочитано: " + earthquakes.size());
+                System.out.println("Ошибок чтения: " + errorCount);
+                System.out.println("Процент успеха: " +
+                        (lineNum > 1 ? String.format("%.1f%%", (earthquakes.size() * 100.0 / (lineNum - 1))) : "0%"));
+            } finally {
+                executor.shutdownNow();
+            }
+
+        } catch (IOException e) {
+            System.err.println("Критическая ошибка чтения файла: " + e.getMessage());
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Параллельное чтение прервано");
+        } catch (ExecutionException e) {
+            System.err.println("Ошибка разбора фрагмента файла: " + e.getCause());
+            e.getCause().printStackTrace();
+        }
+
         return earthquakes;
     }
 
+    // Результат разбора одного фрагмента
+    private static class ChunkResult {
+        final List<Earthquake> earthquakes = new ArrayList<>();
+        int lineCount;
+        int parsedCount;
+        int errorCount;
+    }
+
+    private ChunkResult parseChunk(FileChannel channel, long start, long end, int chunkIndex,
+                                   AtomicInteger reportedErrors) throws IOException {
+        ChunkResult result = new ChunkResult();
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        // Фрагмент начинается и заканчивается на границе строки, поэтому
+        // многобайтовые символы UTF-8 не разрезаются
+        CharBuffer chars = StandardCharsets.UTF_8.decode(mapped);
+
+        parseLines(chars, result.earthquakes::add, result, chunkIndex, reportedErrors, false);
+        return result;
+    }
+
+    // Разбор всех строк буфера, разобранные землетрясения передаются в sink.
+    // skipBlank - пустые строки пропускаются без учета в ошибках
+    private void parseLines(CharSequence chars, Consumer<Earthquake> sink, ChunkResult result, int chunkIndex,
+                            AtomicInteger reportedErrors, boolean skipBlank) {
+        CSVTokenizer tokenizer = tokenizers.get();
+        DateTimeParser dateTimeParser = dateTimeParsers.get();
+
+        int length = chars.length();
+        int lineStart = 0;
+        while (lineStart < length) {
+            int lineEnd = lineStart;
+            while (lineEnd < length && chars.charAt(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int next = lineEnd + 1;
+            if (lineEnd > lineStart && chars.charAt(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+            if (skipBlank && lineEnd == lineStart) {
+                lineStart = next;
+                continue;
+            }
+
+            result.lineCount++;
+            Earthquake eq = parseLine(tokenizer, dateTimeParser, chars, lineStart, lineEnd);
+            if (eq != null) {
+                sink.accept(eq);
+                result.parsedCount++;
+            } else {
+                result.errorCount++;
+                if (reportedErrors.incrementAndGet() <= 3) {
+                    String line = chars.subSequence(lineStart, lineEnd).toString();
+                    System.err.println("Не удалось распарсить строку " + result.lineCount +
+                            " фрагмента " + chunkIndex + ": " +
+                            (line.length() > 100 ? line.substring(0, 100) + "..." : line));
+                }
+            }
+            lineStart = next;
+        }
+    }
+
+    // Инкрементальное чтение с байтовой позиции offset (0 - с начала файла, заголовок
+    // пропускается). Файл считается завершенным: последняя строка без перевода строки
+    // тоже разбирается. Возвращает позицию конца прочитанных данных - ее нужно передать
+    // в следующий вызов, чтобы прочитать только дописанные строки. Ошибка ввода-вывода
+    // пробрасывается: часть строк уже передана в sink, а позиция после них неизвестна
+    public long readCSVFrom(String filename, long offset, Consumer<Earthquake> sink) throws IOException {
+        return readCSVFrom(filename, offset, sink, false);
+    }
+
+    // completeLinesOnly - разбирать только строки, завершенные переводом строки;
+    // незавершенная последняя строка (файл еще дописывается) останется для следующего вызова
+    public long readCSVFrom(String filename, long offset, Consumer<Earthquake> sink, boolean completeLinesOnly)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = offset > 0 ? offset : findLineEnd(channel, 0, size);
+            if (start >= size) {
+                return Math.max(start, offset);
+            }
+            long end = completeLinesOnly ? lastLineEnd(channel, start, size) : size;
+
+            ChunkResult result = new ChunkResult();
+            AtomicInteger reportedErrors = new AtomicInteger();
+            long position = start;
+            int segment = 0;
+            while (position < end) {
+                long segmentEnd = end - position <= MAX_CHUNK_SIZE
+                        ? end : findLineEnd(channel, position + MAX_CHUNK_SIZE, end);
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, segmentEnd - position);
+                parseLines(StandardCharsets.UTF_8.decode(mapped), sink, result, segment++, reportedErrors, true);
+                position = segmentEnd;
+            }
+
+            System.out.println("Прочитано новых строк: " + result.parsedCount +
+                    " (ошибок: " + result.errorCount + ", позиция: " + end + ")");
+            return end;
+        }
+    }
+
+    // Граница данных для потокового чтения с позиции offset (0 - с начала файла):
+    // конец последней строки, завершенной переводом строки. Незавершенная строка
+    // дописываемого файла в диапазон не входит и будет прочитана в следующий раз
+    public long completeLinesEnd(String filename, long offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = offset > 0 ? offset : findLineEnd(channel, 0, size);
+            if (start >= size) {
+                return Math.max(start, offset);
+            }
+            return lastLineEnd(channel, start, size);
+        }
+    }
+
+    // Ленивый поток землетрясений из байтового диапазона [offset, end), где end получен
+    // от completeLinesEnd(). Как и streamCSV, используется в try-with-resources.
+    // Ошибка открытия файла пробрасывается, чтобы отметка загрузки не сдвинулась
+    // за непрочитанные строки; ошибка чтения - UncheckedIOException из потока
+    public Stream<Earthquake> streamCSVFrom(String filename, long offset, long end) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        try {
+            long start = offset > 0 ? offset : findLineEnd(channel, 0, channel.size());
+            InputStream range = new RangeInputStream(Channels.newInputStream(channel.position(start)),
+                    Math.max(0, end - start));
+            BufferedReader reader = new BufferedReader(new InputStreamReader(range, StandardCharsets.UTF_8));
+            return reader.lines()
+                    .map(this::parseLine)
+                    .filter(Objects::nonNull)
+                    .onClose(() -> closeQuietly(reader));
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    // Контрольная сумма CHECKSUM_WINDOW байт перед позицией offset. Позволяет понять,
+    // что файл только дописан, а не заменен другим: данные до позиции должны совпасть
+    public static long checksum(String filename, long offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            long from = Math.max(0, offset - CHECKSUM_WINDOW);
+            ByteBuffer buffer = ByteBuffer.allocate((int) (offset - from));
+            while (buffer.hasRemaining() && channel.read(buffer, from + buffer.position()) > 0) {
+                // Дочитываем окно целиком
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, buffer.position());
+            return crc.getValue();
+        }
+    }
+
+    // Позиция сразу после последнего перевода строки в [from, size), from если его нет
+    private long lastLineEnd(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long end = size;
+        while (end > from) {
+            long blockStart = Math.max(from, end - buffer.capacity());
+            buffer.clear();
+            buffer.limit((int) (end - blockStart));
+            while (buffer.hasRemaining() && channel.read(buffer, blockStart + buffer.position()) > 0) {
+                // Дочитываем блок целиком
+            }
+            for (int i = buffer.position() - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') {
+                    return blockStart + i + 1;
+                }
+            }
+            end = blockStart;
+        }
+        return from;
+    }
+
+    // Позиция сразу после ближайшего перевода строки, начиная с from (или конец файла)
+    private long findLineEnd(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long position = from;
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private String readHeader(FileChannel channel, long headerEnd) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) headerEnd);
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0) {
+            // Дочитываем заголовок целиком
+        }
+        return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8).trim();
+    }
+
+    // Ленивый поток землетрясений; файл закрывается при закрытии потока,
+    // поэтому использовать его нужно в try-with-resources
+    public Stream<Earthquake> streamCSV(String filename) {
+        BufferedReader br = null;
+        try {
+            br = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(filename), StandardCharsets.UTF_8));
+            // Пропускаем заголовок
+            br.readLine();
+        } catch (IOException e) {
+            System.err.println("Критическая ошибка чтения файла: " + e.getMessage());
+            closeQuietly(br);
+            return Stream.empty();
+        }
+
+        BufferedReader reader = br;
+        return reader.lines()
+                .map(this::parseLine)
+                .filter(Objects::nonNull)
+                .onClose(() -> closeQuietly(reader));
+    }
+
+    private void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            System.err.println("Ошибка закрытия файла: " + e.getMessage());
+        }
+    }
+
     public void debugCSV(String filename) {
         try (BufferedReader br = new BufferedReader(
                 new InputStreamReader(new FileInputStream(filename), StandardCharsets.UTF_8))) {
@@ -93,37 +443,44 @@ public class CSVReader {
         }
     }
 
-    private Earthquake parseLine(String line) {
+    Earthquake parseLine(String line) {
+        return parseLine(tokenizers.get(), dateTimeParsers.get(), line, 0, line.length());
+    }
+
+    // Разбор строки из диапазона [from, to) источника без промежуточных строк для чисел
+    private Earthquake parseLine(CSVTokenizer tokenizer, DateTimeParser dateTimeParser,
+                                 CharSequence source, int from, int to) {
         try {
-            // Парсинг CSV
-            String[] parts = parseCSVLine(line);
+            int fieldCount = tokenizer.tokenize(source, from, to);
 
-            // Вывод отладки для первой строки
-            if (parts.length < 6) {
-                System.err.println("Недостаточно колонок в строке: " + parts.length +
+            if (fieldCount < 6) {
+                String line = source.subSequence(from, to).toString();
+                System.err.println("Недостаточно колонок в строке: " + fieldCount +
                         " (ожидается минимум 6). Строка: " +
                         (line.length() > 50 ? line.substring(0, 50) + "..." : line));
                 return null;
             }
 
             // Парсим каждое поле с проверкой
-            String id = parts[0].trim();
+            String id = tokenizer.trimmedField(0);
             if (id.isEmpty()) {
                 id = "UNKNOWN-" + UUID.randomUUID().toString().substring(0, 8);
             }
 
-            double depth = parseDouble(parts[1]);
-            String magnitudeType = parts[2].trim();
-            double magnitude = parseDouble(parts[3]);
-            String state = parts[4].trim().replace("\"", "");
+            double depth = tokenizer.parseDouble(1);
+            String magnitudeType = tokenizer.trimmedField(2);
+            double magnitude = tokenizer.parseDouble(3);
+            String state = tokenizer.trimmedField(4).replace("\"", "");
 
-            String timeStr = parts[5].trim();
-            LocalDateTime time = parseDateTime(timeStr);
+            LocalDateTime time = dateTimeParser.parse(source, tokenizer.start(5), tokenizer.end(5));
 
             // Отладка для проблемных строк
-            if (time == null && timeStr != null && !timeStr.isEmpty()) {
-                System.err.println("ВНИМАНИЕ: Не удалось распарсить время: '" + timeStr + "'");
-                System.err.println("Строка целиком: " + line);
+            if (time == null) {
+                String timeStr = tokenizer.trimmedField(5);
+                if (!timeStr.isEmpty()) {
+                    System.err.println("ВНИМАНИЕ: Не удалось распарсить время: '" + timeStr + "'");
+                    System.err.println("Строка целиком: " + source.subSequence(from, to));
+                }
             }
 
             // Создаем объект землетрясения
@@ -137,6 +494,7 @@ public class CSVReader {
             return eq;
 
         } catch (Exception e) {
+            String line = source.subSequence(from, to).toString();
             System.err.println("Критическая ошибка парсинга строки: " + e.getMessage());
             System.err.println("Строка: " + (line.length() > 100 ? line.substring(0, 100) + "..." : line));
             return null;
@@ -144,191 +502,58 @@ public class CSVReader {
     }
 
     private String[] parseCSVLine(String line) {
-        List<String> result = new ArrayList<>();
-        StringBuilder current = new StringBuilder();
-        boolean inQuotes = false;
-        boolean lastCharWasQuote = false;
-
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-
-            if (c == '"') {
-                if (inQuotes && i + 1 < line.length() && line.charAt(i + 1) == '"') {
-                    // Двойная кавычка внутри кавычек - экранирование
-                    current.append('"');
-                    i++; // Пропускаем следующую кавычку
-                } else {
-                    inQuotes = !inQuotes;
-                    lastCharWasQuote = true;
-                }
-            } else if (c == ',' && !inQuotes) {
-                String value = current.toString();
-                // Убираем внешние кавычки, если есть
-                if (value.startsWith("\"") && value.endsWith("\"")) {
-                    value = value.substring(1, value.length() - 1);
-                }
-                result.add(value);
-                current = new StringBuilder();
-                lastCharWasQuote = false;
-            } else {
-                current.append(c);
-                lastCharWasQuote = false;
-            }
-        }
+        CSVTokenizer tokenizer = tokenizers.get();
+        int fieldCount = tokenizer.tokenize(line, 0, line.length());
 
-        // Добавляем последнее поле
-        String lastValue = current.toString();
-        if (lastValue.startsWith("\"") && lastValue.endsWith("\"")) {
-            lastValue = lastValue.substring(1, lastValue.length() - 1);
+        String[] result = new String[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            result[i] = tokenizer.field(i);
         }
-        result.add(lastValue);
-
-        return result.toArray(new String[0]);
+        return result;
     }
 
-    private double parseDouble(String value) {
-        if (value == null || value.trim().isEmpty()) {
-            return 0.0;
-        }
-
-        String cleaned = value.trim()
-                .replace(',', '.')
-                .replace(" ", "")
-                .replace("\"", "");
-
-        // Убираем лишние символы
-        cleaned = cleaned.replaceAll("[^\\d.-]", "");
-
-        try {
-            return Double.parseDouble(cleaned);
-        } catch (NumberFormatException e) {
-            System.err.println("Не удалось преобразовать в число: '" + value + "' -> '" + cleaned + "'");
+    double parseDouble(String value) {
+        if (value == null) {
             return 0.0;
         }
+        return CSVTokenizer.parseDouble(value, 0, value.length());
     }
 
-    private LocalDateTime parseDateTime(String value) {
-        if (value == null || value.trim().isEmpty()) {
-            return null;
-        }
+    LocalDateTime parseDateTime(String value) {
+        return dateTimeParsers.get().parse(value);
+    }
 
-        String cleaned = value.trim()
-                .replace("\"", "")
-                .replace("'", "")
-                .replace("  ", " ")
-                .trim();
+    // Поток, отдающий не больше limit байт исходного
+    private static class RangeInputStream extends FilterInputStream {
+        private long remaining;
 
-        if (cleaned.contains("+")) {
-            cleaned = cleaned.substring(0, cleaned.indexOf("+"));
-        }
-        if (cleaned.contains("-")) {
-            int lastDash = cleaned.lastIndexOf("-");
-            if (lastDash > 10) { // Если это не часть даты
-                String potentialTimeZone = cleaned.substring(lastDash + 1);
-                if (potentialTimeZone.length() <= 5 && potentialTimeZone.matches("\\d{2}:?\\d{2}")) {
-                    cleaned = cleaned.substring(0, lastDash);
-                }
-            }
+        RangeInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
         }
 
-        // Удаляем лишние пробелы вокруг 'T' и ':'
-        cleaned = cleaned.replace(" T", "T")
-                .replace("T ", "T")
-                .replace(" :", ":")
-                .replace(": ", ":");
-
-        // Расширенный список форматов
-        List<DateTimeFormatter> formatters = Arrays.asList(
-                // Стандартные ISO форматы
-                DateTimeFormatter.ISO_LOCAL_DATE_TIME,
-                DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSSSS"),
-                DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS"),
-                DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss"),
-
-                // Форматы с пробелом вместо T
-                DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSS"),
-                DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS"),
-                DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"),
-
-                // Альтернативные разделители дат
-                DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss"),
-                DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss"),
-                DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm:ss"),
-                DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm:ss"),
-
-                // Без секунд
-                DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"),
-                DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm"),
-
-                // Только дата
-                DateTimeFormatter.ofPattern("yyyy-MM-dd"),
-                DateTimeFormatter.ofPattern("yyyy/MM/dd"),
-                DateTimeFormatter.ofPattern("dd.MM.yyyy"),
-                DateTimeFormatter.ofPattern("MM/dd/yyyy"),
-
-                // Специфические форматы из реальных данных
-                DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSX"),
-                DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssX"),
-                DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss zzz yyyy")
-        );
-
-        for (DateTimeFormatter formatter : formatters) {
-            try {
-                if (formatter.toString().contains("HH:mm")) {
-                    // Форматы с временем
-                    return LocalDateTime.parse(cleaned, formatter);
-                } else {
-                    // Форматы только с датой
-                    try {
-                        return LocalDateTime.parse(cleaned + "T00:00:00",
-                                DateTimeFormatter.ISO_LOCAL_DATE_TIME);
-                    } catch (DateTimeParseException e) {
-                        // Пробуем с пробелом
-                        return LocalDateTime.parse(cleaned + " 00:00:00",
-                                DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-                    }
-                }
-            } catch (DateTimeParseException e) {
-                continue;
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
             }
+            int value = super.read();
+            if (value >= 0) {
+                remaining--;
+            }
+            return value;
         }
 
-        // Обработать вручную сложные случаи
-        try {
-            // Пытаемся найти дату и время регулярными выражениями
-            String dateTimePattern = "(\\d{4})[-/.](\\d{1,2})[-/.](\\d{1,2})[T ](\\d{1,2}):(\\d{1,2}):(\\d{1,2})";
-            java.util.regex.Pattern pattern = java.util.regex.Pattern.compile(dateTimePattern);
-            java.util.regex.Matcher matcher = pattern.matcher(cleaned);
-
-            if (matcher.find()) {
-                int year = Integer.parseInt(matcher.group(1));
-                int month = Integer.parseInt(matcher.group(2));
-                int day = Integer.parseInt(matcher.group(3));
-                int hour = Integer.parseInt(matcher.group(4));
-                int minute = Integer.parseInt(matcher.group(5));
-                int second = Integer.parseInt(matcher.group(6));
-
-                return LocalDateTime.of(year, month, day, hour, minute, second);
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
             }
-
-            // Только дата
-            String datePattern = "(\\d{4})[-/.](\\d{1,2})[-/.](\\d{1,2})";
-            pattern = java.util.regex.Pattern.compile(datePattern);
-            matcher = pattern.matcher(cleaned);
-
-            if (matcher.find()) {
-                int year = Integer.parseInt(matcher.group(1));
-                int month = Integer.parseInt(matcher.group(2));
-                int day = Integer.parseInt(matcher.group(3));
-
-                return LocalDateTime.of(year, month, day, 0, 0, 0);
+            int read = super.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
             }
-
-        } catch (Exception e) {
-            // Игнорируем, перейдем к следующему шагу
+            return read;
         }
-
-        System.err.println("ВНИМАНИЕ: Не удалось распарсить время: '" + value + "' (очищено: '" + cleaned + "')");
-        return null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,84 @@
+package parser;
+
+import models.Earthquake;
+import testutils.Benchmark;
+import testutils.SyntheticData;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Бенчмарк разбора CSV: parseLine, parseDateTime, parseDouble и чтение файла целиком.
+// Запуск: java -cp out parser.CSVReaderBenchmark [1k|1m|10m]
+public class CSVReaderBenchmark {
+    // Размер пула заранее сгенерированных строк для построчных замеров
+    private static final int LINE_POOL = 100_000;
+
+    public static void main(String[] args) throws Exception {
+        int rows = Benchmark.parseScale(args);
+        CSVReader reader = new CSVReader();
+
+        String[] lines = new String[Math.min(rows, LINE_POOL)];
+        String[] times = new String[lines.length];
+        String[] fallbackTimes = new String[lines.length];
+        String[] numbers = new String[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = SyntheticData.csvLine(i);
+            String[] parts = lines[i].split(",");
+            times[i] = parts[parts.length - 1];
+            fallbackTimes[i] = times[i].substring(8, 10) + "." + times[i].substring(5, 7) + "." +
+                    times[i].substring(0, 4) + " " + times[i].substring(11, 19);
+            numbers[i] = parts[1];
+        }
+
+        Benchmark.printHeader("CSVReader, строк: " + rows);
+
+        Benchmark.run("parseLine", rows, operations -> {
+            for (long i = 0; i < operations; i++) {
+                Benchmark.consume(reader.parseLine(lines[(int) (i % lines.length)]));
+            }
+        });
+
+        Benchmark.run("parseDateTime (ISO ...Z)", rows, operations -> {
+            for (long i = 0; i < operations; i++) {
+                Benchmark.consume(reader.parseDateTime(times[(int) (i % times.length)]));
+            }
+        });
+
+        Benchmark.run("parseDateTime (dd.MM.yyyy HH:mm:ss)", rows, operations -> {
+            for (long i = 0; i < operations; i++) {
+                Benchmark.consume(reader.parseDateTime(fallbackTimes[(int) (i % fallbackTimes.length)]));
+            }
+        });
+
+        Benchmark.run("parseDouble", rows, operations -> {
+            for (long i = 0; i < operations; i++) {
+                Benchmark.consume(reader.parseDouble(numbers[(int) (i % numbers.length)]));
+            }
+        });
+
+        Path file = SyntheticData.writeCsv(rows);
+        PrintStream out = System.out;
+        try {
+            // Отчеты readCSV о ходе чтения в замеры не выводим
+            PrintStream quiet = new PrintStream(OutputStream.nullOutputStream());
+
+            Benchmark.run("readCSV (строк)", rows, operations -> {
+                System.setOut(quiet);
+                long count = reader.readCSV(file.toString(), (Earthquake eq) -> Benchmark.consume(eq));
+                System.setOut(out);
+                Benchmark.consume(count);
+            });
+
+            Benchmark.run("readCSVParallel (строк, выделение - только поток вызова)", rows, operations -> {
+                System.setOut(quiet);
+                Benchmark.consume(reader.readCSVParallel(file.toString()));
+                System.setOut(out);
+            });
+        } finally {
+            System.setOut(out);
+            Files.deleteIfExists(file);
+        }
+    }
+}
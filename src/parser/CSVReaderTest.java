@@ -1,11 +1,18 @@
 package parser;
 
 import models.Earthquake;
+import models.EarthquakeStatistics;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class CSVReaderTest {
 
@@ -15,6 +22,12 @@ public class CSVReaderTest {
         try {
             testReadCSV();
             testParseDouble();
+            testParseCSVLine();
+            testParseDateTime();
+            testStreamCSV();
+            testReadCSVParallel();
+            testReadCSVFrom();
+            testTailer();
             System.out.println("✓ Все тесты CSVReader пройдены успешно!");
         } catch (Exception e) {
             System.err.println("✗ Тест провален: " + e.getMessage());
@@ -65,9 +78,236 @@ public class CSVReaderTest {
             double result3 = (double) method.invoke(csvReader, "invalid");
             assert result3 == 0.0 : "parseDouble(invalid) должен вернуть 0.0";
 
+            double result4 = (double) method.invoke(csvReader, " \"-2.75\" ");
+            assert result4 == -2.75 : "parseDouble(\"-2.75\") должен вернуть -2.75";
+
+            double result5 = (double) method.invoke(csvReader, "0.1");
+            assert result5 == Double.parseDouble("0.1") : "parseDouble(0.1) должен совпадать с Double.parseDouble";
+
             System.out.println("  ✓ testParseDouble пройден");
         } catch (Exception e) {
             throw new RuntimeException("Ошибка при тестировании parseDouble", e);
         }
     }
-}
\ No newline at end of file
+
+    private static void testParseCSVLine() {
+        CSVReader csvReader = new CSVReader();
+
+        try {
+            java.lang.reflect.Method method = CSVReader.class.getDeclaredMethod("parseCSVLine", String.class);
+            method.setAccessible(true);
+
+            String[] parts = (String[]) method.invoke(csvReader,
+                    "usp000gz1d,18000,md,2.1,\"southern Quebec, Canada\",2009-07-08T10:22:11.430Z");
+            assert parts.length == 6 : "Должно быть 6 полей, а найдено: " + parts.length;
+            assert parts[4].equals("southern Quebec, Canada") : "Запятая в кавычках не должна разделять поле";
+
+            String[] escaped = (String[]) method.invoke(csvReader, "a,\"say \"\"hi\"\"\",c");
+            assert escaped.length == 3 : "Должно быть 3 поля, а найдено: " + escaped.length;
+            assert escaped[1].equals("say \"hi\"") : "Экранированные кавычки разобраны неверно: " + escaped[1];
+
+            System.out.println("  ✓ testParseCSVLine пройден");
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка при тестировании parseCSVLine", e);
+        }
+    }
+
+    private static void testParseDateTime() {
+        CSVReader csvReader = new CSVReader();
+
+        try {
+            java.lang.reflect.Method method = CSVReader.class.getDeclaredMethod("parseDateTime", String.class);
+            method.setAccessible(true);
+
+            Object iso = method.invoke(csvReader, "2009-07-01T13:44:43.380Z");
+            assert LocalDateTime.of(2009, 7, 1, 13, 44, 43, 380_000_000).equals(iso) : "ISO формат с Z: " + iso;
+
+            Object shortHour = method.invoke(csvReader, "2013-04-19 1:27:01");
+            assert LocalDateTime.of(2013, 4, 19, 1, 27, 1).equals(shortHour) : "Однозначный час: " + shortHour;
+
+            Object dotted = method.invoke(csvReader, "15.12.2023 14:30:00");
+            assert LocalDateTime.of(2023, 12, 15, 14, 30, 0).equals(dotted) : "Формат dd.MM.yyyy: " + dotted;
+
+            // Повторный вызов идет через запомненный форматтер
+            Object dottedAgain = method.invoke(csvReader, "16.12.2023 08:00:00");
+            assert LocalDateTime.of(2023, 12, 16, 8, 0, 0).equals(dottedAgain) : "Запомненный формат: " + dottedAgain;
+
+            Object dateOnly = method.invoke(csvReader, "2023-12-15");
+            assert LocalDateTime.of(2023, 12, 15, 0, 0, 0).equals(dateOnly) : "Только дата: " + dateOnly;
+
+            assert method.invoke(csvReader, "вчера вечером") == null : "Нераспознанное время должно дать null";
+            assert method.invoke(csvReader, "") == null : "Пустая строка должна дать null";
+
+            System.out.println("  ✓ testParseDateTime пройден");
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка при тестировании parseDateTime", e);
+        }
+    }
+
+    private static void testStreamCSV() throws IOException {
+        Path tempFile = Files.createTempFile("test-stream", ".csv");
+        String csvContent = """
+            id,depth,magnitude_type,magnitude,state,time
+            us7000l5h5,10.5,Mw,4.7,California,2023-12-15T14:30:00
+            us7000l6h6,5.2,Mb,3.2,New York,2023-12-14T08:15:00
+            us7000l7h7,8.0,Md,2.1,"southern Quebec, Canada",2022-01-03T10:00:00
+            """;
+
+        Files.writeString(tempFile, csvContent, StandardCharsets.UTF_8);
+
+        CSVReader csvReader = new CSVReader();
+
+        // Ленивый поток
+        List<String> ids;
+        try (Stream<Earthquake> stream = csvReader.streamCSV(tempFile.toString())) {
+            ids = stream.map(Earthquake::getId).collect(Collectors.toList());
+        }
+        assert ids.equals(List.of("us7000l5h5", "us7000l6h6", "us7000l7h7")) : "Неверные ID из потока: " + ids;
+
+        // Push-режим со статистикой без промежуточного списка
+        EarthquakeStatistics statistics = new EarthquakeStatistics();
+        long count = csvReader.readCSV(tempFile.toString(), statistics);
+        assert count == 3 : "Должно быть 3 землетрясения, а найдено: " + count;
+        assert statistics.getTotal() == 3 : "Статистика должна учесть 3 записи";
+        assert "2022 - 2023".equals(statistics.toMap().get("Период данных")) : "Неверный период данных";
+
+        Files.delete(tempFile);
+        System.out.println("  ✓ testStreamCSV пройден");
+    }
+
+    private static void testReadCSVParallel() throws IOException {
+        Path tempFile = Files.createTempFile("test-parallel", ".csv");
+        StringBuilder csvContent = new StringBuilder("id,depth,magnitude_type,magnitude,state,time\n");
+        for (int i = 0; i < 3000; i++) {
+            String state = i % 3 == 0 ? "\"southern Quebec, Canada\"" : "Штат " + (i % 7);
+            csvContent.append("eq").append(i).append(',')
+                    .append(1000 + i).append(",md,")
+                    .append(i % 50 / 10.0).append(',')
+                    .append(state).append(',')
+                    .append(String.format("2014-%02d-%02dT10:%02d:00.000Z", i % 12 + 1, i % 28 + 1, i % 60))
+                    .append(i % 5 == 0 ? "\r\n" : "\n");
+        }
+        Files.writeString(tempFile, csvContent, StandardCharsets.UTF_8);
+
+        CSVReader csvReader = new CSVReader();
+        List<Earthquake> sequential = csvReader.readCSV(tempFile.toString());
+        // Маленькие фрагменты, чтобы границы попадали внутрь файла
+        List<Earthquake> parallel = csvReader.readCSVParallel(tempFile.toString(), 4, 4096);
+
+        assert sequential.size() == 3000 : "Последовательно прочитано: " + sequential.size();
+        assert parallel.size() == sequential.size() : "Параллельно прочитано: " + parallel.size();
+        for (int i = 0; i < sequential.size(); i++) {
+            assert sequential.get(i).toString().equals(parallel.get(i).toString()) :
+                    "Различие в строке " + i + ": " + parallel.get(i);
+        }
+        assert parallel.get(0).getState().equals("southern Quebec, Canada") : "Штат в кавычках разобран неверно";
+
+        Files.delete(tempFile);
+        System.out.println("  ✓ testReadCSVParallel пройден");
+    }
+
+    private static void testReadCSVFrom() throws IOException {
+        Path tempFile = Files.createTempFile("test-incremental", ".csv");
+        Files.writeString(tempFile, "id,depth,magnitude_type,magnitude,state,time\n" +
+                "eq1,1000,md,2.5,Штат А,2014-01-01T10:00:00.000Z\n" +
+                "eq2,2000,md,3.5,Штат Б,2014-01-02T10:00:00.000Z", StandardCharsets.UTF_8);
+
+        CSVReader csvReader = new CSVReader();
+        String filename = tempFile.toString();
+        List<Earthquake> read = new ArrayList<>();
+
+        // Только завершенные строки: незавершенная eq2 остается на следующий раз
+        long offset = csvReader.readCSVFrom(filename, 0, read::add, true);
+        assert read.size() == 1 && read.get(0).getId().equals("eq1") : "Прочитано: " + read;
+
+        // Потоковое чтение того же диапазона
+        assert csvReader.completeLinesEnd(filename, 0) == offset : "Граница завершенных строк";
+        try (Stream<Earthquake> stream = csvReader.streamCSVFrom(filename, 0, offset)) {
+            List<String> ids = stream.map(Earthquake::getId).collect(Collectors.toList());
+            assert ids.equals(List.of("eq1")) : "Прочитано потоком: " + ids;
+        }
+        assert csvReader.completeLinesEnd(filename, offset) == offset : "Незавершенная строка вошла в диапазон";
+
+        Files.writeString(tempFile, "\neq3,3000,md,4.5,Штат В,2014-01-03T10:00:00.000Z\n",
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        long checksum = CSVReader.checksum(filename, offset);
+
+        read.clear();
+        long next = csvReader.readCSVFrom(filename, offset, read::add);
+        assert read.size() == 2 : "Дописанных строк: " + read.size();
+        assert read.get(0).getId().equals("eq2") && read.get(1).getId().equals("eq3") : "Прочитано: " + read;
+        assert next == Files.size(tempFile) : "Позиция после чтения: " + next;
+        try (Stream<Earthquake> stream = csvReader.streamCSVFrom(filename, offset,
+                csvReader.completeLinesEnd(filename, offset))) {
+            assert stream.count() == 2 : "Дописанных строк в потоке";
+        }
+        // Данные до прежней позиции не изменились
+        assert CSVReader.checksum(filename, offset) == checksum : "Контрольная сумма изменилась";
+
+        read.clear();
+        assert csvReader.readCSVFrom(filename, next, read::add) == next && read.isEmpty() : "Повторное чтение";
+
+        Files.delete(tempFile);
+        System.out.println("  ✓ testReadCSVFrom пройден");
+    }
+
+    private static void testTailer() throws Exception {
+        Path tempFile = Files.createTempFile("test-tail", ".csv");
+        Files.writeString(tempFile, "id,depth,magnitude_type,magnitude,state,time\n" +
+                "eq1,1000,md,2.5,Штат А,2014-01-01T10:00:00.000Z\n", StandardCharsets.UTF_8);
+        String filename = tempFile.toString();
+
+        // Слушатель вызывается и из потока слежения
+        List<Earthquake> received = Collections.synchronizedList(new ArrayList<>());
+        List<long[]> ranges = new ArrayList<>();
+        CSVTailer.Listener listener = (rows, from, to) -> {
+            received.addAll(rows);
+            ranges.add(new long[]{from, to});
+        };
+
+        CSVTailer tailer = new CSVTailer(new CSVReader(), filename, 0);
+        assert tailer.poll(listener) == 1 : "Должна быть прочитана первая строка";
+        assert tailer.poll(listener) == 0 : "Без дописывания новых строк нет";
+
+        // Незавершенная строка ждет перевода строки
+        long before = tailer.getOffset();
+        Files.writeString(tempFile, "eq2,2000,md,3.5,Штат Б,2014-01-02", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        assert tailer.poll(listener) == 0 && tailer.getOffset() == before : "Незавершенная строка не должна читаться";
+
+        Files.writeString(tempFile, "T10:00:00.000Z\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        assert tailer.poll(listener) == 1 : "Дописанная строка должна быть прочитана";
+        assert received.get(1).getId().equals("eq2") && received.get(1).getTime() != null : "Прочитано: " + received;
+        assert ranges.get(1)[0] == before && ranges.get(1)[1] == Files.size(tempFile) : "Неверный диапазон порции";
+
+        // Слежение в отдельном потоке
+        Thread watcher = new Thread(() -> {
+            try {
+                tailer.watch(listener, 50);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        watcher.start();
+        Files.writeString(tempFile, "eq3,3000,md,4.5,Штат В,2014-01-03T10:00:00.000Z\n",
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        for (int attempt = 0; attempt < 100 && received.size() < 3; attempt++) {
+            Thread.sleep(50);
+        }
+        tailer.stop();
+        watcher.join(5000);
+        assert received.size() == 3 && received.get(2).getId().equals("eq3") : "Слежение не получило строку: " + received;
+
+        // Замененный файл дописывать нельзя
+        Files.writeString(tempFile, "id,depth,magnitude_type,magnitude,state,time\n", StandardCharsets.UTF_8);
+        boolean rejected = false;
+        try {
+            tailer.poll(listener);
+        } catch (IllegalStateException e) {
+            rejected = true;
+        }
+        assert rejected : "Укороченный файл должен быть отклонен";
+
+        Files.delete(tempFile);
+        System.out.println("  ✓ testTailer пройден");
+    }
+}
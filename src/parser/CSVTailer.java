@@ -0,0 +1,107 @@
+package parser;
+
+import models.Earthquake;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Режим слежения за дописываемым CSV. Запоминает байтовую позицию, до которой
+// файл уже прочитан, и при каждой проверке разбирает только новые завершенные
+// строки (незавершенная последняя строка ждет следующей проверки).
+// Изменения отслеживаются через WatchService; на файловых системах, где события
+// не приходят, срабатывает опрос раз в pollMillis. Если файл укорочен или данные
+// перед позицией изменились, продолжать дописывание нельзя - бросается
+// IllegalStateException. Экземпляр не потокобезопасен, кроме stop()
+public class CSVTailer {
+    public static final long DEFAULT_POLL_MILLIS = 1000;
+
+    // Получатель новых строк: rows прочитаны из диапазона [fromOffset, toOffset).
+    // Позиция сдвигается только после успешного возврата
+    public interface Listener {
+        void onRows(List<Earthquake> rows, long fromOffset, long toOffset) throws Exception;
+    }
+
+    private final CSVReader reader;
+    private final String filename;
+    private final Path path;
+    private long offset;
+    private long checksum;
+    private volatile boolean running;
+
+    // offset - позиция, до которой файл уже обработан (0 - с начала, заголовок пропускается)
+    public CSVTailer(CSVReader reader, String filename, long offset) throws IOException {
+        this.reader = reader;
+        this.filename = filename;
+        this.path = Paths.get(filename);
+        this.offset = offset;
+        this.checksum = CSVReader.checksum(filename, offset);
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    // Одна проверка: читает дописанные строки и передает их listener.
+    // Возвращает количество новых строк
+    public int poll(Listener listener) throws Exception {
+        long size = Files.size(path);
+        if (size < offset || CSVReader.checksum(filename, offset) != checksum) {
+            throw new IllegalStateException("Файл " + filename + " укорочен или заменен, "
+                    + "дописывание с позиции " + offset + " невозможно");
+        }
+        if (size == offset) {
+            return 0;
+        }
+
+        List<Earthquake> rows = new ArrayList<>();
+        long end = reader.readCSVFrom(filename, offset, rows::add, true);
+        if (end == offset) {
+            return 0;
+        }
+
+        if (!rows.isEmpty()) {
+            listener.onRows(rows, offset, end);
+        }
+        offset = end;
+        checksum = CSVReader.checksum(filename, end);
+        return rows.size();
+    }
+
+    // Следит за файлом до stop() или прерывания потока
+    public void watch(Listener listener, long pollMillis) throws Exception {
+        running = true;
+        Path directory = path.toAbsolutePath().getParent();
+        try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+            directory.register(watcher, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+
+            // Строки, дописанные до начала слежения
+            poll(listener);
+            while (running) {
+                WatchKey key = watcher.poll(pollMillis, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    // Событие может относиться к другому файлу каталога - проверка дешевая
+                    key.pollEvents();
+                    key.reset();
+                }
+                poll(listener);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            running = false;
+        }
+    }
+
+    public void stop() {
+        running = false;
+    }
+}
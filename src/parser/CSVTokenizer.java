@@ -0,0 +1,217 @@
+package parser;
+
+import java.util.Arrays;
+
+// Разбор строки CSV без промежуточных строк: токенизатор запоминает только
+// границы полей в переиспользуемых массивах, а строки создаются лишь для тех
+// полей, которые действительно нужны. Экземпляр не потокобезопасен
+class CSVTokenizer {
+    // Степени десяти, которые представимы в double точно
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private CharSequence source;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int count;
+    private final StringBuilder scratch = new StringBuilder();
+
+    // Разбивает диапазон [from, to) на поля, возвращает количество полей
+    int tokenize(CharSequence src, int from, int to) {
+        source = src;
+        count = 0;
+
+        boolean inQuotes = false;
+        int fieldStart = from;
+        for (int i = from; i < to; i++) {
+            char c = src.charAt(i);
+            if (c == '"') {
+                if (inQuotes && i + 1 < to && src.charAt(i + 1) == '"') {
+                    // Двойная кавычка внутри кавычек - экранирование
+                    i++;
+                } else {
+                    inQuotes = !inQuotes;
+                }
+            } else if (c == ',' && !inQuotes) {
+                addField(fieldStart, i);
+                fieldStart = i + 1;
+            }
+        }
+        addField(fieldStart, to);
+
+        return count;
+    }
+
+    int fieldCount() {
+        return count;
+    }
+
+    int start(int field) {
+        return starts[field];
+    }
+
+    int end(int field) {
+        return ends[field];
+    }
+
+    CharSequence source() {
+        return source;
+    }
+
+    // Значение поля без кавычек, как его возвращал прежний parseCSVLine
+    String field(int field) {
+        int from = starts[field];
+        int to = ends[field];
+
+        if (!containsQuote(from, to)) {
+            return source.subSequence(from, to).toString();
+        }
+        // Частый случай: поле целиком в кавычках без экранирования внутри
+        if (to - from >= 2 && source.charAt(from) == '"' && source.charAt(to - 1) == '"'
+                && !containsQuote(from + 1, to - 1)) {
+            return source.subSequence(from + 1, to - 1).toString();
+        }
+        return unquote(from, to);
+    }
+
+    // Значение поля без кавычек и без пробелов по краям
+    String trimmedField(int field) {
+        int from = starts[field];
+        int to = ends[field];
+
+        if (!containsQuote(from, to)) {
+            while (from < to && source.charAt(from) <= ' ') from++;
+            while (to > from && source.charAt(to - 1) <= ' ') to--;
+            return source.subSequence(from, to).toString();
+        }
+        return field(field).trim();
+    }
+
+    double parseDouble(int field) {
+        return parseDouble(source, starts[field], ends[field]);
+    }
+
+    // Разбор числа прямо из диапазона символов. Правила очистки те же, что и раньше:
+    // запятая считается десятичной точкой, все кроме цифр, точки и минуса отбрасывается.
+    // Простые значения вида "-12.5" считаются без создания строк, остальные
+    // уходят в Double.parseDouble
+    static double parseDouble(CharSequence s, int from, int to) {
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean negative = false;
+        boolean seenDot = false;
+        boolean simple = true;
+        boolean blank = true;
+
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c > ' ') {
+                blank = false;
+            }
+
+            if (c >= '0' && c <= '9') {
+                if (digits >= 18) {
+                    simple = false;
+                } else {
+                    mantissa = mantissa * 10 + (c - '0');
+                }
+                digits++;
+                if (seenDot) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' || c == ',') {
+                if (seenDot) {
+                    simple = false;
+                }
+                seenDot = true;
+            } else if (c == '-') {
+                if (negative || digits > 0 || seenDot) {
+                    simple = false;
+                }
+                negative = true;
+            }
+        }
+
+        if (blank) {
+            return 0.0;
+        }
+
+        if (simple && digits > 0 && fractionDigits < POWERS_OF_TEN.length && mantissa < MAX_EXACT_MANTISSA) {
+            // Оба операнда точны, поэтому деление дает тот же результат, что и Double.parseDouble
+            double value = fractionDigits == 0 ? mantissa : mantissa / POWERS_OF_TEN[fractionDigits];
+            return negative ? -value : value;
+        }
+
+        return parseDoubleSlow(s, from, to);
+    }
+
+    private static double parseDoubleSlow(CharSequence s, int from, int to) {
+        StringBuilder cleaned = new StringBuilder(to - from);
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c == ',') {
+                cleaned.append('.');
+            } else if ((c >= '0' && c <= '9') || c == '.' || c == '-') {
+                cleaned.append(c);
+            }
+        }
+
+        try {
+            return Double.parseDouble(cleaned.toString());
+        } catch (NumberFormatException e) {
+            System.err.println("Не удалось преобразовать в число: '" + s.subSequence(from, to) +
+                    "' -> '" + cleaned + "'");
+            return 0.0;
+        }
+    }
+
+    private void addField(int from, int to) {
+        if (count == starts.length) {
+            int newLength = starts.length * 2;
+            starts = Arrays.copyOf(starts, newLength);
+            ends = Arrays.copyOf(ends, newLength);
+        }
+        starts[count] = from;
+        ends[count] = to;
+        count++;
+    }
+
+    private boolean containsQuote(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (source.charAt(i) == '"') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Медленный путь для полей с экранированными кавычками
+    private String unquote(int from, int to) {
+        scratch.setLength(0);
+        boolean inQuotes = false;
+        for (int i = from; i < to; i++) {
+            char c = source.charAt(i);
+            if (c == '"') {
+                if (inQuotes && i + 1 < to && source.charAt(i + 1) == '"') {
+                    scratch.append('"');
+                    i++;
+                } else {
+                    inQuotes = !inQuotes;
+                }
+            } else {
+                scratch.append(c);
+            }
+        }
+
+        // Убираем внешние кавычки, если они остались после экранирования
+        int length = scratch.length();
+        if (length >= 2 && scratch.charAt(0) == '"' && scratch.charAt(length - 1) == '"') {
+            return scratch.substring(1, length - 1);
+        }
+        return scratch.toString();
+    }
+}
@@ -0,0 +1,274 @@
+package parser;
+
+import java.text.ParsePosition;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.Year;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Разбор времени землетрясения.
+// Основной формат выгрузок (2009-07-01T13:44:43.380Z, а также варианты с пробелом
+// вместо T и однозначными часами) разбирается вручную прямо из диапазона символов,
+// без исключений и промежуточных строк. Для остальных форматов используется список
+// форматтеров, причем последний сработавший запоминается и пробуется первым,
+// так как внутри одного файла формат обычно не меняется. Экземпляр не потокобезопасен
+class DateTimeParser {
+    private static final Pattern TIME_ZONE_PATTERN = Pattern.compile("\\d{2}:?\\d{2}");
+    private static final Pattern DATE_TIME_PATTERN =
+            Pattern.compile("(\\d{4})[-/.](\\d{1,2})[-/.](\\d{1,2})[T ](\\d{1,2}):(\\d{1,2}):(\\d{1,2})");
+    private static final Pattern DATE_PATTERN = Pattern.compile("(\\d{4})[-/.](\\d{1,2})[-/.](\\d{1,2})");
+
+    // Расширенный список форматов
+    private static final DateTimeFormatter[] FORMATTERS = {
+            // Стандартные ISO форматы
+            DateTimeFormatter.ISO_LOCAL_DATE_TIME,
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSSSS"),
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS"),
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss"),
+
+            // Форматы с пробелом вместо T
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSS"),
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS"),
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"),
+
+            // Альтернативные разделители дат
+            DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss"),
+            DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss"),
+            DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm:ss"),
+            DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm:ss"),
+
+            // Без секунд
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"),
+            DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm"),
+
+            // Только дата
+            DateTimeFormatter.ofPattern("yyyy-MM-dd"),
+            DateTimeFormatter.ofPattern("yyyy/MM/dd"),
+            DateTimeFormatter.ofPattern("dd.MM.yyyy"),
+            DateTimeFormatter.ofPattern("MM/dd/yyyy"),
+
+            // Специфические форматы из реальных данных
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSX"),
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssX"),
+            DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss zzz yyyy")
+    };
+    // Индекс первого форматтера, содержащего только дату
+    private static final int FIRST_DATE_ONLY = 13;
+    private static final int LAST_DATE_ONLY = 16;
+
+    // Последний сработавший форматтер, -1 если еще не было
+    private int lastFormatter = -1;
+    // Позиция разбора для быстрого пути
+    private int cursor;
+
+    // Разбор из диапазона [from, to): сначала быстрый путь, затем общий
+    LocalDateTime parse(CharSequence source, int from, int to) {
+        while (from < to && source.charAt(from) <= ' ') from++;
+        while (to > from && source.charAt(to - 1) <= ' ') to--;
+        if (to - from >= 2 && source.charAt(from) == '"' && source.charAt(to - 1) == '"') {
+            from++;
+            to--;
+        }
+        if (from == to) {
+            return null;
+        }
+
+        LocalDateTime fast = parseFast(source, from, to);
+        if (fast != null) {
+            return fast;
+        }
+        return parseWithFormatters(source.subSequence(from, to).toString());
+    }
+
+    LocalDateTime parse(String value) {
+        if (value == null) {
+            return null;
+        }
+        return parse(value, 0, value.length());
+    }
+
+    // yyyy-M-d('T'|' ')H:m:s[.fraction][Z] с одно- или двузначными компонентами.
+    // Возвращает null, если строка не подходит под формат
+    private LocalDateTime parseFast(CharSequence s, int from, int to) {
+        cursor = from;
+
+        int year = readNumber(s, to, 4, 4);
+        if (year < 0 || !expect(s, to, '-')) return null;
+        int month = readNumber(s, to, 1, 2);
+        if (month < 1 || month > 12 || !expect(s, to, '-')) return null;
+        int day = readNumber(s, to, 1, 2);
+        if (day < 1 || day > Month.of(month).length(Year.isLeap(year))) return null;
+
+        if (cursor >= to || (s.charAt(cursor) != 'T' && s.charAt(cursor) != ' ')) return null;
+        cursor++;
+
+        int hour = readNumber(s, to, 1, 2);
+        if (hour < 0 || hour > 23 || !expect(s, to, ':')) return null;
+        int minute = readNumber(s, to, 1, 2);
+        if (minute < 0 || minute > 59 || !expect(s, to, ':')) return null;
+        int second = readNumber(s, to, 1, 2);
+        if (second < 0 || second > 59) return null;
+
+        int nanos = 0;
+        if (cursor < to && s.charAt(cursor) == '.') {
+            cursor++;
+            int digits = 0;
+            while (cursor < to && digits < 9 && isDigit(s.charAt(cursor))) {
+                nanos = nanos * 10 + (s.charAt(cursor) - '0');
+                digits++;
+                cursor++;
+            }
+            if (digits == 0) return null;
+            for (int i = digits; i < 9; i++) {
+                nanos *= 10;
+            }
+        }
+
+        // Смещение Z отбрасываем, как и раньше: время хранится как локальное
+        if (cursor < to && s.charAt(cursor) == 'Z') {
+            cursor++;
+        }
+        if (cursor != to) {
+            return null;
+        }
+
+        return LocalDateTime.of(year, month, day, hour, minute, second, nanos);
+    }
+
+    private int readNumber(CharSequence s, int to, int minDigits, int maxDigits) {
+        int value = 0;
+        int digits = 0;
+        while (cursor < to && digits < maxDigits && isDigit(s.charAt(cursor))) {
+            value = value * 10 + (s.charAt(cursor) - '0');
+            digits++;
+            cursor++;
+        }
+        return digits >= minDigits ? value : -1;
+    }
+
+    private boolean expect(CharSequence s, int to, char c) {
+        if (cursor < to && s.charAt(cursor) == c) {
+            cursor++;
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // Общий путь для нестандартных форматов
+    private LocalDateTime parseWithFormatters(String value) {
+        String cleaned = value.trim()
+                .replace("\"", "")
+                .replace("'", "")
+                .replace("  ", " ")
+                .trim();
+
+        if (cleaned.contains("+")) {
+            cleaned = cleaned.substring(0, cleaned.indexOf("+"));
+        }
+        if (cleaned.contains("-")) {
+            int lastDash = cleaned.lastIndexOf("-");
+            if (lastDash > 10) { // Если это не часть даты
+                String potentialTimeZone = cleaned.substring(lastDash + 1);
+                if (potentialTimeZone.length() <= 5 && TIME_ZONE_PATTERN.matcher(potentialTimeZone).matches()) {
+                    cleaned = cleaned.substring(0, lastDash);
+                }
+            }
+        }
+
+        // Удаляем лишние пробелы вокруг 'T' и ':'
+        cleaned = cleaned.replace(" T", "T")
+                .replace("T ", "T")
+                .replace(" :", ":")
+                .replace(": ", ":");
+
+        // Сначала пробуем форматтер, сработавший в прошлый раз
+        if (lastFormatter >= 0) {
+            LocalDateTime result = tryFormatter(lastFormatter, cleaned);
+            if (result != null) {
+                return result;
+            }
+        }
+
+        for (int i = 0; i < FORMATTERS.length; i++) {
+            if (i == lastFormatter) {
+                continue;
+            }
+            LocalDateTime result = tryFormatter(i, cleaned);
+            if (result != null) {
+                lastFormatter = i;
+                return result;
+            }
+        }
+
+        // Обработать вручную сложные случаи
+        Matcher matcher = DATE_TIME_PATTERN.matcher(cleaned);
+        if (matcher.find()) {
+            LocalDateTime result = ofFields(matcher, true);
+            if (result != null) {
+                return result;
+            }
+        }
+
+        // Только дата
+        matcher = DATE_PATTERN.matcher(cleaned);
+        if (matcher.find()) {
+            LocalDateTime result = ofFields(matcher, false);
+            if (result != null) {
+                return result;
+            }
+        }
+
+        System.err.println("ВНИМАНИЕ: Не удалось распарсить время: '" + value + "' (очищено: '" + cleaned + "')");
+        return null;
+    }
+
+    private LocalDateTime tryFormatter(int index, String text) {
+        DateTimeFormatter formatter = FORMATTERS[index];
+
+        // Предварительная проверка без исключений: большинство форматтеров
+        // отсеивается здесь, до дорогого разбора с выбросом DateTimeParseException
+        ParsePosition position = new ParsePosition(0);
+        if (formatter.parseUnresolved(text, position) == null
+                || position.getErrorIndex() >= 0
+                || position.getIndex() != text.length()) {
+            return null;
+        }
+
+        try {
+            if (index >= FIRST_DATE_ONLY && index <= LAST_DATE_ONLY) {
+                return LocalDate.parse(text, formatter).atStartOfDay();
+            }
+            return LocalDateTime.parse(text, formatter);
+        } catch (DateTimeParseException e) {
+            // Текст совпал по форме, но значения некорректны (например, 31 февраля)
+            return null;
+        }
+    }
+
+    private LocalDateTime ofFields(Matcher matcher, boolean withTime) {
+        try {
+            int year = Integer.parseInt(matcher.group(1));
+            int month = Integer.parseInt(matcher.group(2));
+            int day = Integer.parseInt(matcher.group(3));
+            if (!withTime) {
+                return LocalDateTime.of(year, month, day, 0, 0, 0);
+            }
+
+            int hour = Integer.parseInt(matcher.group(4));
+            int minute = Integer.parseInt(matcher.group(5));
+            int second = Integer.parseInt(matcher.group(6));
+            return LocalDateTime.of(year, month, day, hour, minute, second);
+        } catch (Exception e) {
+            // Игнорируем, перейдем к следующему шагу
+            return null;
+        }
+    }
+}
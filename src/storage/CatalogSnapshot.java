@@ -0,0 +1,202 @@
+package storage;
+
+import models.EarthquakeStore;
+import parser.CSVReader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+// Двоичный колоночный снимок разобранного каталога. Позволяет при повторных
+// запусках не разбирать CSV заново: колонки хранилища лежат в файле подряд
+// и читаются целиком через отображение файла в память.
+//
+// Формат (little-endian):
+//   заголовок HEADER_SIZE байт: MAGIC, VERSION, количество событий, резерв (int),
+//   длина пула id (long), разобранный размер, время изменения и контрольная сумма
+//   исходного файла, минимальное и максимальное время событий;
+//   колонки, каждая с границы 8 байт: магнитуды и глубины (double), время (long),
+//   коды штатов и типов магнитуды (int), концы id (long), признаки null id
+//   (long-слова), символы id (char);
+//   словари штатов и типов магнитуды: количество, затем строки (длина + UTF-8).
+// Снимок, записанный другой версией формата или по другому исходному файлу,
+// считается устаревшим и не загружается. Пишется снимок через SnapshotWriter
+public class CatalogSnapshot {
+    static final int MAGIC = 0x45515331; // "EQS1"
+    static final int VERSION = 3;
+    static final int HEADER_SIZE = 64;
+
+    private CatalogSnapshot() {
+    }
+
+    // Загружает снимок в кучу, если он есть и построен по текущему состоянию source.
+    // Возвращает null, если снимок отсутствует, устарел или поврежден.
+    // Для каталогов больше кучи - MappedEventStore.open()
+    public static EarthquakeStore load(Path snapshot, Path source) throws IOException {
+        if (!Files.isRegularFile(snapshot) || !Files.isRegularFile(source)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            Layout layout = Layout.read(channel, source);
+            if (layout == null) {
+                return null;
+            }
+            int size = layout.size;
+            if (layout.idLength > Integer.MAX_VALUE - 8) {
+                System.err.println("Снимок " + snapshot + " слишком велик для загрузки в кучу");
+                return null;
+            }
+
+            double[] magnitudes = new double[size];
+            map(channel, layout.magnitudes, 8L * size).asDoubleBuffer().get(magnitudes);
+            double[] depths = new double[size];
+            map(channel, layout.depths, 8L * size).asDoubleBuffer().get(depths);
+            long[] times = new long[size];
+            map(channel, layout.times, 8L * size).asLongBuffer().get(times);
+            int[] stateCodes = new int[size];
+            map(channel, layout.stateCodes, 4L * size).asIntBuffer().get(stateCodes);
+            int[] magnitudeTypeCodes = new int[size];
+            map(channel, layout.magnitudeTypeCodes, 4L * size).asIntBuffer().get(magnitudeTypeCodes);
+            int[] idEnds = new int[size];
+            LongBuffer idEndColumn = map(channel, layout.idEnds, 8L * size).asLongBuffer();
+            for (int i = 0; i < size; i++) {
+                idEnds[i] = (int) idEndColumn.get(i);
+            }
+            long[] nullWords = new long[words(size)];
+            map(channel, layout.nullIds, 8L * nullWords.length).asLongBuffer().get(nullWords);
+            char[] idChars = new char[(int) layout.idLength];
+            map(channel, layout.idChars, 2L * layout.idLength).asCharBuffer().get(idChars);
+
+            ByteBuffer dictionaries = map(channel, layout.dictionaries, channel.size() - layout.dictionaries);
+            List<String> states = readStrings(dictionaries);
+            List<String> magnitudeTypes = readStrings(dictionaries);
+
+            return EarthquakeStore.fromColumns(size, magnitudes, depths, times, stateCodes, magnitudeTypeCodes,
+                    idChars, idEnds, BitSet.valueOf(nullWords), states, magnitudeTypes);
+        } catch (RuntimeException e) {
+            // Обрезанный или испорченный файл - снимок просто перестраивается
+            System.err.println("Снимок " + snapshot + " поврежден: " + e);
+            return null;
+        }
+    }
+
+    // Записывает снимок хранилища, построенного по файлу source целиком
+    public static void write(EarthquakeStore store, Path snapshot, Path source) throws IOException {
+        long sourceSize = Files.size(source);
+        try (SnapshotWriter writer = new SnapshotWriter(snapshot)) {
+            for (int i = 0; i < store.size(); i++) {
+                writer.accept(store.get(i));
+            }
+            writer.commit(source, sourceSize);
+        }
+    }
+
+    // Источник считается тем же, если совпадают время изменения и контрольная сумма
+    // байт перед разобранной позицией size, а после нее нет ни одной завершенной
+    // строки - только незавершенная последняя строка, которую разбор пропустил
+    private static boolean isSameSource(Path source, long size, long modified, long checksum) throws IOException {
+        return Files.size(source) >= size
+                && Files.getLastModifiedTime(source).toMillis() == modified
+                && CSVReader.checksum(source.toString(), size) == checksum
+                && new CSVReader().completeLinesEnd(source.toString(), size) == size;
+    }
+
+    static ByteBuffer map(FileChannel channel, long position, long length) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    static int words(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    static List<String> readStrings(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            values.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return values;
+    }
+
+    // Заголовок снимка и позиции колонок в файле
+    static class Layout {
+        final int size;
+        final long idLength;
+        final long sourceSize;
+        final long magnitudes;
+        final long depths;
+        final long times;
+        final long stateCodes;
+        final long magnitudeTypeCodes;
+        final long idEnds;
+        final long nullIds;
+        final long idChars;
+        final long dictionaries;
+        final long minTime;
+        final long maxTime;
+
+        private Layout(int size, long idLength, long sourceSize, long minTime, long maxTime) {
+            this.size = size;
+            this.idLength = idLength;
+            this.sourceSize = sourceSize;
+            this.minTime = minTime;
+            this.maxTime = maxTime;
+            magnitudes = HEADER_SIZE;
+            depths = align(magnitudes + 8L * size);
+            times = align(depths + 8L * size);
+            stateCodes = align(times + 8L * size);
+            magnitudeTypeCodes = align(stateCodes + 4L * size);
+            idEnds = align(magnitudeTypeCodes + 4L * size);
+            nullIds = align(idEnds + 8L * size);
+            idChars = align(nullIds + 8L * words(size));
+            dictionaries = align(idChars + 2L * idLength);
+        }
+
+        // Читает заголовок; null, если это не снимок текущей версии,
+        // он построен по другому состоянию source или обрезан.
+        // source == null - источник не сверяется (снимок только что записан)
+        static Layout read(FileChannel channel, Path source) throws IOException {
+            if (channel.size() < HEADER_SIZE) {
+                return null;
+            }
+            ByteBuffer header = map(channel, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                return null;
+            }
+            int size = header.getInt();
+            header.getInt();
+            long idLength = header.getLong();
+            long sourceSize = header.getLong();
+            long sourceModified = header.getLong();
+            long sourceChecksum = header.getLong();
+            long minTime = header.getLong();
+            long maxTime = header.getLong();
+            if (size < 0 || idLength < 0 || idLength > channel.size()
+                    || source != null && !isSameSource(source, sourceSize, sourceModified, sourceChecksum)) {
+                return null;
+            }
+
+            Layout layout = new Layout(size, idLength, sourceSize, minTime, maxTime);
+            if (layout.dictionaries > channel.size()) {
+                return null;
+            }
+            return layout;
+        }
+    }
+}
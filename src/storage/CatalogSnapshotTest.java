@@ -0,0 +1,268 @@
+package storage;
+
+import models.Earthquake;
+import models.EarthquakeAnalyzer;
+import models.EarthquakeStore;
+import parser.CSVReader;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.concurrent.ForkJoinPool;
+
+public class CatalogSnapshotTest {
+
+    public static void main(String[] args) {
+        System.out.println("=== Запуск тестов CatalogSnapshot ===");
+
+        try {
+            testRoundTrip();
+            testStaleSnapshot();
+            testCorruptSnapshot();
+            testMappedStore();
+            testStreamingWriter();
+            System.out.println("✓ Все тесты CatalogSnapshot пройдены успешно!");
+        } catch (AssertionError e) {
+            System.err.println("✗ Тест провален: " + e.getMessage());
+        } catch (Exception e) {
+            System.err.println("✗ Тест провален: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private static EarthquakeStore sampleStore(int count) {
+        String[] states = {"West Virginia", "NEW YORK", "new york, USA", "Québec, Canada", "Ohio", ""};
+        EarthquakeStore store = new EarthquakeStore();
+        for (int i = 0; i < count; i++) {
+            LocalDateTime time = i % 7 == 0 ? null :
+                    LocalDateTime.of(1990 + i % 25, i % 12 + 1, i % 28 + 1, i % 24, i % 60, i % 60, (i % 1000) * 1_000_000);
+            store.add(new Earthquake(i % 13 == 0 ? null : "eq" + i, (i * 7919) % 60000, i % 3 == 0 ? "md" : "mblg",
+                    (i * 31 % 70) / 10.0, i % 17 == 0 ? null : states[i % states.length], time));
+        }
+        return store;
+    }
+
+    private static Path sampleSource() throws IOException {
+        Path source = Files.createTempFile("snapshot-source", ".csv");
+        Files.writeString(source, "id,depth,magType,mag,state,time\neq1,1,md,1.0,Ohio,\n", StandardCharsets.UTF_8);
+        return source;
+    }
+
+    private static void testRoundTrip() throws IOException {
+        Path source = sampleSource();
+        Path snapshot = Files.createTempFile("test", ".snapshot");
+        try {
+            EarthquakeStore original = sampleStore(1000);
+            CatalogSnapshot.write(original, snapshot, source);
+            EarthquakeStore loaded = CatalogSnapshot.load(snapshot, source);
+
+            assert loaded != null : "Снимок должен загрузиться";
+            assert loaded.size() == original.size() : "Размер не совпадает: " + loaded.size();
+            for (int i = 0; i < original.size(); i++) {
+                Earthquake expected = original.get(i);
+                Earthquake actual = loaded.get(i);
+                assert String.valueOf(expected.getId()).equals(String.valueOf(actual.getId())) : "ID не совпадает: " + i;
+                assert expected.getMagnitude() == actual.getMagnitude() : "Магнитуда не совпадает: " + i;
+                assert expected.getDepth() == actual.getDepth() : "Глубина не совпадает: " + i;
+                assert String.valueOf(expected.getState()).equals(String.valueOf(actual.getState())) : "Штат не совпадает: " + i;
+                assert expected.getMagnitudeType().equals(actual.getMagnitudeType()) : "Тип магнитуды не совпадает: " + i;
+                assert String.valueOf(expected.getTime()).equals(String.valueOf(actual.getTime())) : "Время не совпадает: " + i;
+                assert original.regionCode(i) == loaded.regionCode(i) : "Код региона не совпадает: " + i;
+            }
+            assert loaded.minTime() == original.minTime() && loaded.maxTime() == original.maxTime()
+                    : "Диапазон времени не совпадает";
+
+            EarthquakeAnalyzer before = new EarthquakeAnalyzer(original);
+            EarthquakeAnalyzer after = new EarthquakeAnalyzer(loaded);
+            assert before.getStatistics().equals(after.getStatistics()) : "Статистика отличается";
+            assert before.getStateStatistics().equals(after.getStateStatistics()) : "Статистика штатов отличается";
+
+            // В загруженное хранилище можно добавлять события
+            loaded.add(new Earthquake("extra", 100, "md", 2.0, "Ohio", null));
+            assert loaded.get(loaded.size() - 1).getId().equals("extra") : "Новое событие не добавилось";
+
+            // Пустое хранилище
+            CatalogSnapshot.write(new EarthquakeStore(), snapshot, source);
+            EarthquakeStore empty = CatalogSnapshot.load(snapshot, source);
+            assert empty != null && empty.isEmpty() : "Пустой снимок должен загрузиться";
+        } finally {
+            Files.deleteIfExists(snapshot);
+            Files.deleteIfExists(source);
+        }
+
+        System.out.println("  ✓ testRoundTrip пройден");
+    }
+
+    private static void testStaleSnapshot() throws IOException {
+        Path source = sampleSource();
+        Path snapshot = Files.createTempFile("test", ".snapshot");
+        try {
+            CatalogSnapshot.write(sampleStore(50), snapshot, source);
+            assert CatalogSnapshot.load(snapshot, source) != null : "Свежий снимок должен загрузиться";
+
+            // Дописанный источник - снимок устарел
+            Files.writeString(source, "eq2,1,md,1.0,Ohio,\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+            assert CatalogSnapshot.load(snapshot, source) == null : "Устаревший снимок не должен загружаться";
+
+            Files.delete(snapshot);
+            assert CatalogSnapshot.load(snapshot, source) == null : "Отсутствующий снимок не должен загружаться";
+        } finally {
+            Files.deleteIfExists(snapshot);
+            Files.deleteIfExists(source);
+        }
+
+        System.out.println("  ✓ testStaleSnapshot пройден");
+    }
+
+    private static void testCorruptSnapshot() throws IOException {
+        Path source = sampleSource();
+        Path snapshot = Files.createTempFile("test", ".snapshot");
+        try {
+            CatalogSnapshot.write(sampleStore(50), snapshot, source);
+            long size = Files.size(snapshot);
+            try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+                channel.truncate(size / 2);
+            }
+            assert CatalogSnapshot.load(snapshot, source) == null : "Обрезанный снимок не должен загружаться";
+
+            Files.write(snapshot, new byte[10]);
+            assert CatalogSnapshot.load(snapshot, source) == null : "Файл без заголовка не должен загружаться";
+        } finally {
+            Files.deleteIfExists(snapshot);
+            Files.deleteIfExists(source);
+        }
+
+        System.out.println("  ✓ testCorruptSnapshot пройден");
+    }
+
+    private static void testMappedStore() throws IOException {
+        Path source = sampleSource();
+        Path snapshot = Files.createTempFile("test", ".snapshot");
+        try {
+            EarthquakeStore original = sampleStore(2000);
+            CatalogSnapshot.write(original, snapshot, source);
+            MappedEventStore mapped = MappedEventStore.open(snapshot, source);
+
+            assert mapped != null : "Снимок должен отобразиться";
+            assert mapped.size() == original.size() : "Размер не совпадает: " + mapped.size();
+            assert mapped.minTime() == original.minTime() && mapped.maxTime() == original.maxTime()
+                    : "Диапазон времени не совпадает";
+            for (int i = 0; i < original.size(); i++) {
+                assert original.get(i).toString().equals(mapped.get(i).toString()) : "Событие не совпадает: " + i;
+                assert original.regionCode(i) == mapped.regionCode(i) : "Код региона не совпадает: " + i;
+            }
+
+            // Все агрегаты анализатора считаются по отображенным колонкам так же, как по куче
+            EarthquakeAnalyzer heap = new EarthquakeAnalyzer(original);
+            EarthquakeAnalyzer offHeap = new EarthquakeAnalyzer(mapped);
+            ForkJoinPool pool = new ForkJoinPool(4);
+            try {
+                for (int pass = 0; pass < 2; pass++) {
+                    assert heap.getStatistics().equals(offHeap.getStatistics()) : "Статистика отличается";
+                    assert heap.getStateStatistics().equals(offHeap.getStateStatistics()) : "Штаты отличаются";
+                    assert heap.getMagnitudeDistribution().equals(offHeap.getMagnitudeDistribution())
+                            : "Распределение по магнитудам отличается";
+                    assert heap.getDepthDistribution().equals(offHeap.getDepthDistribution())
+                            : "Распределение по глубине отличается";
+                    assert heap.getYearDistribution().equals(offHeap.getYearDistribution())
+                            : "Распределение по годам отличается";
+                    assert heap.getMonthDistribution(2000).equals(offHeap.getMonthDistribution(2000))
+                            : "Распределение по месяцам отличается";
+                    assert heap.getTopByMagnitude(10).toString().equals(offHeap.getTopByMagnitude(10).toString())
+                            : "Топ по магнитуде отличается";
+                    assert heap.getEarthquakesByRegion("Ohio").toString()
+                            .equals(offHeap.getEarthquakesByRegion("Ohio").toString()) : "События региона отличаются";
+                    offHeap.setParallel(pool, 300);
+                }
+            } finally {
+                pool.shutdown();
+            }
+
+            boolean rejected = false;
+            try {
+                offHeap.addEarthquake(new Earthquake("extra", 100, "md", 2.0, "Ohio", null));
+            } catch (UnsupportedOperationException e) {
+                rejected = true;
+            }
+            assert rejected : "Отображенные колонки должны быть только для чтения";
+
+            Files.writeString(source, "eq2,1,md,1.0,Ohio,\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+            assert MappedEventStore.open(snapshot, source) == null : "Устаревший снимок не должен отображаться";
+        } finally {
+            Files.deleteIfExists(snapshot);
+            Files.deleteIfExists(source);
+        }
+
+        System.out.println("  ✓ testMappedStore пройден");
+    }
+
+    private static void testStreamingWriter() throws IOException {
+        Path source = Files.createTempFile("snapshot-stream", ".csv");
+        Path snapshot = Files.createTempFile("test", ".snapshot");
+        StringBuilder csv = new StringBuilder("id,depth,magnitude_type,magnitude,state,time\n");
+        for (int i = 0; i < 300; i++) {
+            csv.append("eq").append(i).append(',')
+                    .append(1000 + i).append(",md,")
+                    .append(i % 50 / 10.0).append(',')
+                    .append(i % 4 == 0 ? "\"southern Quebec, Canada\"" : "Штат " + (i % 7)).append(',')
+                    .append(i % 9 == 0 ? "" : String.format("2014-%02d-%02dT10:00:00.000Z", i % 12 + 1, i % 28 + 1))
+                    .append('\n');
+        }
+        // Последняя строка еще дописывается: в снимок она не попадает
+        csv.append("eq-partial,1,md,1.0,Ohio");
+        Files.writeString(source, csv, StandardCharsets.UTF_8);
+        try {
+            CSVReader reader = new CSVReader();
+            EarthquakeStore parsed = new EarthquakeStore();
+            long complete = reader.readCSVFrom(source.toString(), 0, parsed::add, true);
+
+            // Разбор сразу в снимок, без хранилища в куче
+            try (SnapshotWriter writer = new SnapshotWriter(snapshot)) {
+                long end = reader.readCSVFrom(source.toString(), 0, writer, true);
+                assert end == complete && end < Files.size(source) : "Позиция после чтения: " + end;
+                assert writer.size() == parsed.size() : "Записано событий: " + writer.size();
+                writer.commit(source, end);
+            }
+
+            MappedEventStore mapped = MappedEventStore.open(snapshot, source);
+            assert mapped != null : "Снимок должен отобразиться";
+            assert mapped.sourceOffset() == complete : "Позиция источника: " + mapped.sourceOffset();
+            assert mapped.size() == parsed.size() : "Размер не совпадает: " + mapped.size();
+            for (int i = 0; i < parsed.size(); i++) {
+                assert parsed.get(i).toString().equals(mapped.get(i).toString()) : "Событие не совпадает: " + i;
+                assert parsed.regionCode(i) == mapped.regionCode(i) : "Код региона не совпадает: " + i;
+            }
+            assert mapped.minTime() == parsed.minTime() && mapped.maxTime() == parsed.maxTime()
+                    : "Диапазон времени не совпадает";
+
+            // Источник дописан после разбора: сверка с ним отвергает снимок,
+            // но только что записанный снимок открывается с прежней позицией источника
+            Files.writeString(source, ",\neq-new,1,md,1.0,Ohio,\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+            assert MappedEventStore.open(snapshot, source) == null : "Устаревший снимок не должен отображаться";
+            MappedEventStore written = MappedEventStore.open(snapshot);
+            assert written != null && written.size() == parsed.size() : "Записанный снимок должен отобразиться";
+            assert written.sourceOffset() == complete : "Позиция источника: " + written.sourceOffset();
+
+            // Снимок, не подтвержденный commit(), не появляется, временные файлы удаляются
+            Files.delete(snapshot);
+            try (SnapshotWriter writer = new SnapshotWriter(snapshot)) {
+                reader.readCSV(source.toString(), writer);
+            }
+            assert !Files.exists(snapshot) : "Снимок без commit() не должен появиться";
+            try (java.util.stream.Stream<Path> files = Files.list(snapshot.toAbsolutePath().getParent())) {
+                String prefix = snapshot.getFileName().toString();
+                assert files.noneMatch(f -> f.getFileName().toString().startsWith(prefix))
+                        : "Временные файлы колонок не удалены";
+            }
+        } finally {
+            Files.deleteIfExists(snapshot);
+            Files.deleteIfExists(source);
+        }
+
+        System.out.println("  ✓ testStreamingWriter пройден");
+    }
+}
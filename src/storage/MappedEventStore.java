@@ -0,0 +1,202 @@
+package storage;
+
+import models.Earthquake;
+import models.EarthquakeStore;
+import models.EventColumns;
+import models.StateNormalizer;
+import models.StringDictionary;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+// Колонки событий прямо в отображенном в память снимке (CatalogSnapshot) без
+// копирования в кучу. В куче остаются только словари штатов и типов магнитуды,
+// поэтому каталог может быть больше кучи: страницы колонок подгружает
+// и вытесняет операционная система, сборщик мусора их не видит.
+// Колонка отображается сегментами по SEGMENT_SIZE элементов, так как один
+// отображенный буфер ограничен 2 ГБ. Только чтение; потокобезопасно
+public class MappedEventStore implements EventColumns {
+    private static final int SEGMENT_SHIFT = 27;
+    static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private final int size;
+    private final long sourceOffset;
+    private final long minTime;
+    private final long maxTime;
+    private final ByteBuffer[] magnitudes;
+    private final ByteBuffer[] depths;
+    private final ByteBuffer[] times;
+    private final ByteBuffer[] stateCodes;
+    private final ByteBuffer[] magnitudeTypeCodes;
+    private final ByteBuffer[] idEnds;
+    private final ByteBuffer[] nullIds;
+    private final ByteBuffer[] idChars;
+
+    private final List<String> states;
+    private final List<String> magnitudeTypes;
+    // Нормализованный код для каждого кода исходной строки штата
+    private final int[] stateToRegion;
+    private final StateNormalizer regions = new StateNormalizer();
+
+    private MappedEventStore(FileChannel channel, CatalogSnapshot.Layout layout) throws IOException {
+        size = layout.size;
+        sourceOffset = layout.sourceSize;
+        minTime = layout.minTime;
+        maxTime = layout.maxTime;
+        magnitudes = mapColumn(channel, layout.magnitudes, size, 8);
+        depths = mapColumn(channel, layout.depths, size, 8);
+        times = mapColumn(channel, layout.times, size, 8);
+        stateCodes = mapColumn(channel, layout.stateCodes, size, 4);
+        magnitudeTypeCodes = mapColumn(channel, layout.magnitudeTypeCodes, size, 4);
+        idEnds = mapColumn(channel, layout.idEnds, size, 8);
+        nullIds = mapColumn(channel, layout.nullIds, CatalogSnapshot.words(size), 8);
+        idChars = mapColumn(channel, layout.idChars, layout.idLength, 2);
+
+        ByteBuffer dictionaries = CatalogSnapshot.map(channel, layout.dictionaries,
+                channel.size() - layout.dictionaries);
+        states = CatalogSnapshot.readStrings(dictionaries);
+        magnitudeTypes = CatalogSnapshot.readStrings(dictionaries);
+
+        // Коды словаря штатов идут в порядке первого появления, поэтому
+        // нормализованные коды получаются теми же, что и в EarthquakeStore
+        stateToRegion = new int[states.size()];
+        for (int code = 0; code < stateToRegion.length; code++) {
+            stateToRegion[code] = regions.encode(states.get(code));
+        }
+    }
+
+    // Отображает снимок, если он есть и построен по текущему состоянию source.
+    // Возвращает null, если снимок отсутствует, устарел или поврежден.
+    // Отображение остается действительным после закрытия канала
+    public static MappedEventStore open(Path snapshot, Path source) throws IOException {
+        if (!Files.isRegularFile(snapshot) || !Files.isRegularFile(source)) {
+            return null;
+        }
+        return map(snapshot, source);
+    }
+
+    // Отображает только что записанный снимок без сверки с источником: источник
+    // мог быть дописан во время разбора, но снимок соответствует прочитанной части
+    // (sourceOffset()). Возвращает null, если снимок отсутствует или поврежден
+    public static MappedEventStore open(Path snapshot) throws IOException {
+        if (!Files.isRegularFile(snapshot)) {
+            return null;
+        }
+        return map(snapshot, null);
+    }
+
+    private static MappedEventStore map(Path snapshot, Path source) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            CatalogSnapshot.Layout layout = CatalogSnapshot.Layout.read(channel, source);
+            return layout != null ? new MappedEventStore(channel, layout) : null;
+        } catch (RuntimeException e) {
+            System.err.println("Снимок " + snapshot + " поврежден: " + e);
+            return null;
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // Позиция в исходном CSV, до которой он разобран в снимок
+    public long sourceOffset() {
+        return sourceOffset;
+    }
+
+    @Override
+    public double magnitude(int index) {
+        return magnitudes[index >>> SEGMENT_SHIFT].getDouble((index & SEGMENT_MASK) << 3);
+    }
+
+    @Override
+    public double depth(int index) {
+        return depths[index >>> SEGMENT_SHIFT].getDouble((index & SEGMENT_MASK) << 3);
+    }
+
+    @Override
+    public long time(int index) {
+        return times[index >>> SEGMENT_SHIFT].getLong((index & SEGMENT_MASK) << 3);
+    }
+
+    @Override
+    public long minTime() {
+        return minTime;
+    }
+
+    @Override
+    public long maxTime() {
+        return maxTime;
+    }
+
+    public int stateCode(int index) {
+        return stateCodes[index >>> SEGMENT_SHIFT].getInt((index & SEGMENT_MASK) << 2);
+    }
+
+    public int magnitudeTypeCode(int index) {
+        return magnitudeTypeCodes[index >>> SEGMENT_SHIFT].getInt((index & SEGMENT_MASK) << 2);
+    }
+
+    @Override
+    public int regionCode(int index) {
+        int stateCode = stateCode(index);
+        return stateCode == StringDictionary.NULL_CODE ? StateNormalizer.NO_STATE : stateToRegion[stateCode];
+    }
+
+    @Override
+    public StateNormalizer regions() {
+        return regions;
+    }
+
+    public String id(int index) {
+        long word = nullIds[(index >>> 6) >>> SEGMENT_SHIFT].getLong(((index >>> 6) & SEGMENT_MASK) << 3);
+        if ((word & (1L << index)) != 0) {
+            return null;
+        }
+        long start = index == 0 ? 0 : idEnd(index - 1);
+        long end = idEnd(index);
+        char[] chars = new char[(int) (end - start)];
+        for (int i = 0; i < chars.length; i++) {
+            long position = start + i;
+            chars[i] = idChars[(int) (position >>> SEGMENT_SHIFT)].getChar((int) (position & SEGMENT_MASK) << 1);
+        }
+        return new String(chars);
+    }
+
+    @Override
+    public Earthquake get(int index) {
+        long time = time(index);
+        int stateCode = stateCode(index);
+        int magnitudeTypeCode = magnitudeTypeCode(index);
+        return new Earthquake(
+                id(index),
+                depth(index),
+                magnitudeTypeCode == StringDictionary.NULL_CODE ? null : magnitudeTypes.get(magnitudeTypeCode),
+                magnitude(index),
+                stateCode == StringDictionary.NULL_CODE ? null : states.get(stateCode),
+                time != EarthquakeStore.NO_TIME ? EarthquakeStore.toLocalDateTime(time) : null);
+    }
+
+    private long idEnd(int index) {
+        return idEnds[index >>> SEGMENT_SHIFT].getLong((index & SEGMENT_MASK) << 3);
+    }
+
+    // Колонка из count элементов по width байт, сегментами по SEGMENT_SIZE элементов
+    private static ByteBuffer[] mapColumn(FileChannel channel, long position, long count, int width)
+            throws IOException {
+        ByteBuffer[] segments = new ByteBuffer[(int) ((count + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT)];
+        for (int s = 0; s < segments.length; s++) {
+            long first = (long) s << SEGMENT_SHIFT;
+            long length = Math.min(SEGMENT_SIZE, count - first) * width;
+            segments[s] = CatalogSnapshot.map(channel, position + first * width, length);
+        }
+        return segments;
+    }
+}
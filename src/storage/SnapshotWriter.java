@@ -0,0 +1,278 @@
+package storage;
+
+import models.Earthquake;
+import models.EarthquakeStore;
+import models.StringDictionary;
+import parser.CSVReader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+// Потоковая запись снимка (формат - см. CatalogSnapshot) прямо из разбора CSV:
+//   try (SnapshotWriter writer = new SnapshotWriter(snapshot)) {
+//       long end = csvReader.readCSVFrom(filename, 0, writer, true);
+//       writer.commit(source, end);
+//   }
+// Колонки сбрасываются во временные файлы рядом со снимком по мере поступления
+// событий, в куче остаются только буферы записи и словари штатов и типов
+// магнитуды, поэтому каталог может быть больше кучи. commit() склеивает колонки
+// в один файл и атомарно заменяет им снимок; close() без commit() удаляет все
+// временные файлы. Ошибка записи в accept() запоминается и выбрасывается из
+// commit(), чтобы разборщик не принял ее за ошибку строки CSV
+public class SnapshotWriter implements Consumer<Earthquake>, Closeable {
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    private final Path snapshot;
+    // Колонки в порядке их следования в файле снимка
+    private final Column magnitudes;
+    private final Column depths;
+    private final Column times;
+    private final Column stateCodes;
+    private final Column magnitudeTypeCodes;
+    private final Column idEnds;
+    private final Column nullIds;
+    private final Column idChars;
+
+    private final StringDictionary states = new StringDictionary();
+    private final StringDictionary magnitudeTypes = new StringDictionary();
+
+    private int size;
+    private long idLength;
+    // Признаки null id текущего 64-битного слова
+    private long nullWord;
+    private long minTime = EarthquakeStore.NO_TIME;
+    private long maxTime = EarthquakeStore.NO_TIME;
+    private IOException failure;
+
+    public SnapshotWriter(Path snapshot) throws IOException {
+        this.snapshot = snapshot.toAbsolutePath();
+        Column[] columns = new Column[8];
+        try {
+            for (int c = 0; c < columns.length; c++) {
+                columns[c] = new Column(this.snapshot);
+            }
+        } catch (IOException e) {
+            for (Column column : columns) {
+                if (column != null) {
+                    column.delete();
+                }
+            }
+            throw e;
+        }
+        magnitudes = columns[0];
+        depths = columns[1];
+        times = columns[2];
+        stateCodes = columns[3];
+        magnitudeTypeCodes = columns[4];
+        idEnds = columns[5];
+        nullIds = columns[6];
+        idChars = columns[7];
+    }
+
+    @Override
+    public void accept(Earthquake eq) {
+        if (failure != null) {
+            return;
+        }
+        if (size == Integer.MAX_VALUE) {
+            failure = new IOException("Слишком много событий для снимка: " + size);
+            return;
+        }
+        try {
+            magnitudes.out.putDouble(eq.getMagnitude());
+            depths.out.putDouble(eq.getDepth());
+            long time = eq.getTime() != null ? EarthquakeStore.toEpochMillis(eq.getTime()) : EarthquakeStore.NO_TIME;
+            times.out.putLong(time);
+            if (time != EarthquakeStore.NO_TIME) {
+                minTime = minTime == EarthquakeStore.NO_TIME ? time : Math.min(minTime, time);
+                maxTime = maxTime == EarthquakeStore.NO_TIME ? time : Math.max(maxTime, time);
+            }
+            stateCodes.out.putInt(states.encode(eq.getState()));
+            magnitudeTypeCodes.out.putInt(magnitudeTypes.encode(eq.getMagnitudeType()));
+
+            String id = eq.getId();
+            if (id == null) {
+                nullWord |= 1L << size;
+            } else {
+                for (int c = 0; c < id.length(); c++) {
+                    idChars.out.putChar(id.charAt(c));
+                }
+                idLength += id.length();
+            }
+            idEnds.out.putLong(idLength);
+
+            size++;
+            if ((size & 63) == 0) {
+                nullIds.out.putLong(nullWord);
+                nullWord = 0;
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Записывает снимок. sourceSize - позиция в source, до которой он разобран:
+    // снимок считается действительным, пока размер и последние байты source
+    // перед этой позицией не изменились. Вызывается один раз
+    public void commit(Path source, long sourceSize) throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        if ((size & 63) != 0) {
+            nullIds.out.putLong(nullWord);
+        }
+        long sourceModified = Files.getLastModifiedTime(source).toMillis();
+        long sourceChecksum = CSVReader.checksum(source.toString(), sourceSize);
+
+        Path temp = Files.createTempFile(snapshot.getParent(), snapshot.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                // Заголовок записывается в конце, когда известны размеры колонок
+                long position = CatalogSnapshot.HEADER_SIZE;
+                for (Column column : new Column[]{magnitudes, depths, times, stateCodes,
+                        magnitudeTypeCodes, idEnds, nullIds, idChars}) {
+                    position = CatalogSnapshot.align(position + column.transferTo(channel, position));
+                }
+
+                Output out = new Output(channel, position);
+                writeStrings(out, states);
+                writeStrings(out, magnitudeTypes);
+                out.flush();
+
+                ByteBuffer header = ByteBuffer.allocate(CatalogSnapshot.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(CatalogSnapshot.MAGIC).putInt(CatalogSnapshot.VERSION).putInt(size).putInt(0)
+                        .putLong(idLength).putLong(sourceSize).putLong(sourceModified).putLong(sourceChecksum)
+                        .putLong(minTime).putLong(maxTime);
+                header.clear();
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+                channel.force(false);
+            }
+            Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Удаляет временные файлы колонок
+    @Override
+    public void close() throws IOException {
+        for (Column column : new Column[]{magnitudes, depths, times, stateCodes,
+                magnitudeTypeCodes, idEnds, nullIds, idChars}) {
+            column.delete();
+        }
+    }
+
+    private static void writeStrings(Output out, StringDictionary dictionary) throws IOException {
+        out.putInt(dictionary.size());
+        for (int code = 0; code < dictionary.size(); code++) {
+            byte[] bytes = dictionary.decode(code).getBytes(StandardCharsets.UTF_8);
+            out.putInt(bytes.length);
+            out.putBytes(bytes);
+        }
+    }
+
+    // Колонка во временном файле
+    private static class Column {
+        final Path file;
+        final FileChannel channel;
+        final Output out;
+
+        Column(Path snapshot) throws IOException {
+            file = Files.createTempFile(snapshot.getParent(), snapshot.getFileName().toString(), ".col");
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            out = new Output(channel, 0);
+        }
+
+        // Копирует колонку в target с позиции position, возвращает ее длину в байтах
+        long transferTo(FileChannel target, long position) throws IOException {
+            out.flush();
+            long length = out.position();
+            long copied = 0;
+            while (copied < length) {
+                copied += channel.transferTo(copied, length - copied, target.position(position + copied));
+            }
+            return length;
+        }
+
+        void delete() throws IOException {
+            channel.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // Последовательная запись в канал через буфер
+    private static class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long position;
+
+        Output(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        long position() {
+            return position + buffer.position();
+        }
+
+        void putDouble(double value) throws IOException {
+            ensure(8);
+            buffer.putDouble(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putChar(char value) throws IOException {
+            ensure(2);
+            buffer.putChar(value);
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+    }
+}
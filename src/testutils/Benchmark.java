@@ -0,0 +1,112 @@
+package testutils;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+// Простой измеритель производительности для бенчмарков проекта (*Benchmark.java).
+// Каждый замер: несколько прогревочных итераций, затем измеряемые итерации.
+// Выводит пропускную способность (операций в секунду), объем выделенной памяти
+// на операцию и скорость выделения (по счетчику ThreadMXBean текущего потока),
+// а также число и время сборок мусора за измеряемые итерации.
+// Параметры запуска: -Dbench.warmup=3 -Dbench.iterations=5
+public class Benchmark {
+    private static final int WARMUP = Integer.getInteger("bench.warmup", 3);
+    private static final int ITERATIONS = Integer.getInteger("bench.iterations", 5);
+
+    // Поглотитель результатов, чтобы JIT не выбросил вычисления
+    private static volatile Object sink;
+    private static double doubleSink;
+
+    public interface Body {
+        // Выполняет operations операций одной итерации
+        void run(long operations) throws Exception;
+    }
+
+    public static void consume(Object value) {
+        sink = value;
+    }
+
+    public static void consume(double value) {
+        doubleSink += value;
+    }
+
+    public static void printHeader(String title) {
+        System.out.println("\n=== " + title + " ===");
+        System.out.printf("%-45s | %-16s | %-14s | %-12s | %s%n",
+                "Бенчмарк", "Операций/с", "Байт/операцию", "МБ/с выдел.", "GC (шт/мс)");
+        System.out.println("-".repeat(110));
+    }
+
+    public static void run(String name, long operations, Body body) {
+        try {
+            for (int i = 0; i < WARMUP; i++) {
+                body.run(operations);
+            }
+
+            long gcCountBefore = gcCount();
+            long gcTimeBefore = gcTime();
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+
+            for (int i = 0; i < ITERATIONS; i++) {
+                body.run(operations);
+            }
+
+            long elapsed = System.nanoTime() - start;
+            long allocated = allocatedBytes() - allocatedBefore;
+            long totalOperations = operations * ITERATIONS;
+            double seconds = elapsed / 1e9;
+
+            System.out.printf("%-45s | %-16.1f | %-14.1f | %-12.1f | %d/%d%n",
+                    name,
+                    totalOperations / seconds,
+                    allocated / (double) totalOperations,
+                    allocated / seconds / (1024 * 1024),
+                    gcCount() - gcCountBefore,
+                    gcTime() - gcTimeBefore);
+        } catch (Exception e) {
+            System.out.printf("%-45s | ошибка: %s%n", name, e);
+        }
+    }
+
+    // Размер данных из аргумента командной строки: 1k, 1m или 10m
+    public static int parseScale(String[] args) {
+        String scale = args.length > 0 ? args[0].toLowerCase() : "1k";
+        switch (scale) {
+            case "1k":
+                return 1_000;
+            case "1m":
+                return 1_000_000;
+            case "10m":
+                return 10_000_000;
+            default:
+                return Integer.parseInt(scale);
+        }
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        List<GarbageCollectorMXBean> beans = ManagementFactory.getGarbageCollectorMXBeans();
+        for (GarbageCollectorMXBean bean : beans) {
+            count += Math.max(0, bean.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, bean.getCollectionTime());
+        }
+        return time;
+    }
+}
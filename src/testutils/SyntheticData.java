@@ -0,0 +1,82 @@
+package testutils;
+
+import models.Earthquake;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+// Генератор синтетических данных в формате Землетрясения.csv.
+// Значения детерминированы номером строки, поэтому прогоны воспроизводимы
+public class SyntheticData {
+    public static final String HEADER = "ID,Глубина в метрах,Тип магнитуды,Магнитуда,Штат,Время";
+
+    private static final String[] STATES = {
+            "West Virginia", "New York", "Pennsylvania", "NEW YORK", "Virginia", "Ohio",
+            "\"southern Quebec, Canada\"", "New Jersey", "\"Ontario-Quebec border region, Canada\"",
+            "Greater New York Area", "Chesapeake Bay region", "Maryland"
+    };
+    private static final String[] MAGNITUDE_TYPES = {"md", "mblg", "ml", "mb", "mw"};
+
+    public static String csvLine(int i) {
+        long h = mix(i);
+        int year = 1973 + (int) (h % 43);
+        int month = 1 + (int) ((h >>> 8) % 12);
+        int day = 1 + (int) ((h >>> 16) % 28);
+        int hour = (int) ((h >>> 24) % 24);
+        int minute = (int) ((h >>> 32) % 60);
+        int second = (int) ((h >>> 40) % 60);
+        int millis = (int) ((h >>> 44) % 1000);
+
+        return String.format("syn%08d,%d,%s,%.1f,%s,%04d-%02d-%02dT%02d:%02d:%02d.%03dZ",
+                i,
+                depth(h),
+                MAGNITUDE_TYPES[(int) ((h >>> 5) % MAGNITUDE_TYPES.length)],
+                magnitude(h),
+                STATES[(int) ((h >>> 12) % STATES.length)],
+                year, month, day, hour, minute, second, millis);
+    }
+
+    public static Earthquake earthquake(int i) {
+        long h = mix(i);
+        LocalDateTime time = LocalDateTime.of(1973 + (int) (h % 43), 1 + (int) ((h >>> 8) % 12),
+                1 + (int) ((h >>> 16) % 28), (int) ((h >>> 24) % 24), (int) ((h >>> 32) % 60),
+                (int) ((h >>> 40) % 60));
+        String state = STATES[(int) ((h >>> 12) % STATES.length)].replace("\"", "");
+        return new Earthquake(String.format("syn%08d", i), depth(h),
+                MAGNITUDE_TYPES[(int) ((h >>> 5) % MAGNITUDE_TYPES.length)], magnitude(h), state, time);
+    }
+
+    // Временный CSV файл с заголовком и rows строками данных
+    public static Path writeCsv(int rows) throws IOException {
+        Path file = Files.createTempFile("synthetic-earthquakes", ".csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (int i = 0; i < rows; i++) {
+                writer.write(csvLine(i));
+                writer.newLine();
+            }
+        }
+        return file;
+    }
+
+    private static int depth(long h) {
+        return 100 * (int) ((h >>> 20) % 400);
+    }
+
+    private static double magnitude(long h) {
+        return ((h >>> 28) % 60) / 10.0;
+    }
+
+    // Перемешивание номера строки (splitmix64)
+    private static long mix(long x) {
+        x += 0x9E3779B97F4A7C15L;
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        return (x ^ (x >>> 31)) >>> 1;
+    }
+}